@@ -3,6 +3,10 @@ package com.orion.visualizer;
 import com.orion.visualizer.controller.MainController;
 import com.orion.visualizer.model.FilterCriteria;
 import com.orion.visualizer.model.PlayerSide;
+import com.orion.visualizer.service.MetricsService;
+import com.orion.visualizer.util.FxThreadMonitor;
+import com.orion.visualizer.util.PgnInputStreams;
+import com.orion.visualizer.util.StartupTimer;
 import com.orion.visualizer.view.*;
 import javafx.application.Application;
 import javafx.geometry.Insets;
@@ -12,11 +16,15 @@ import javafx.scene.Scene;
 import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.io.File;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Main JavaFX application for Orion Repertoire Visualizer.
@@ -24,12 +32,14 @@ import java.time.LocalDate;
 public class OrionVisualizerApp extends Application {
     private MainController controller;
     private Stage primaryStage;
+    private FxThreadMonitor fxThreadMonitor;
     
     // UI Components
     private ChessboardView chessboardView;
     private OpeningTreeView openingTreeView;
     private GameListView gameListView;
     private Label statusLabel;
+    private Label stallLabel;
     private ProgressBar progressBar;
     
     // Filter components
@@ -38,9 +48,11 @@ public class OrionVisualizerApp extends Application {
     private DatePicker startDatePicker;
     private DatePicker endDatePicker;
     private TextField opponentField;
+    private Spinner<Integer> minSupportSpinner;
 
     @Override
     public void start(Stage primaryStage) {
+        StartupTimer.markApplicationStart();
         this.primaryStage = primaryStage;
         this.controller = new MainController();
         
@@ -53,6 +65,7 @@ public class OrionVisualizerApp extends Application {
         // Setup controller callbacks
         controller.setStatusCallback(this::updateStatus);
         controller.setLoadingCallback(this::setLoading);
+        controller.setProgressCallback(this::setProgress);
         
         // Initialize views in controller
         controller.setViews(chessboardView, openingTreeView, gameListView);
@@ -66,6 +79,23 @@ public class OrionVisualizerApp extends Application {
         primaryStage.setTitle("Orion Repertoire Visualizer");
         primaryStage.setScene(scene);
         primaryStage.show();
+        StartupTimer.trackFirstFrame();
+        
+        // Watch FX thread responsiveness
+        fxThreadMonitor = new FxThreadMonitor();
+        fxThreadMonitor.setOnStall(count -> stallLabel.setText("UI stalls: " + count));
+        fxThreadMonitor.start();
+    }
+
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.stopWatching();
+            controller.stopFollowing();
+        }
+        if (fxThreadMonitor != null) {
+            fxThreadMonitor.stop();
+        }
     }
 
     /**
@@ -80,13 +110,34 @@ public class OrionVisualizerApp extends Application {
         MenuItem importPgnItem = new MenuItem("Import PGN...");
         importPgnItem.setOnAction(e -> handleImportPgn());
         
+        MenuItem importShardedItem = new MenuItem("Import PGN (Sharded)...");
+        importShardedItem.setOnAction(e -> handleImportPgnSharded());
+        
+        MenuItem appendPgnItem = new MenuItem("Append PGN to Database...");
+        appendPgnItem.setOnAction(e -> handleAppendPgn());
+        
+        MenuItem watchFolderItem = new MenuItem("Watch Folder for PGN Files...");
+        watchFolderItem.setOnAction(e -> handleWatchFolder());
+        
+        MenuItem stopWatchingItem = new MenuItem("Stop Watching Folder");
+        stopWatchingItem.setOnAction(e -> controller.stopWatching());
+        
+        MenuItem followLiveItem = new MenuItem("Follow Live PGN...");
+        followLiveItem.setOnAction(e -> handleFollowLivePgn());
+        
+        MenuItem stopFollowingItem = new MenuItem("Stop Following Live PGN");
+        stopFollowingItem.setOnAction(e -> controller.stopFollowing());
+        
         MenuItem loadDbItem = new MenuItem("Load Database...");
         loadDbItem.setOnAction(e -> handleLoadDatabase());
         
         MenuItem exitItem = new MenuItem("Exit");
         exitItem.setOnAction(e -> primaryStage.close());
         
-        fileMenu.getItems().addAll(importPgnItem, loadDbItem, new SeparatorMenuItem(), exitItem);
+        fileMenu.getItems().addAll(importPgnItem, importShardedItem, appendPgnItem, loadDbItem,
+                                   new SeparatorMenuItem(), watchFolderItem, stopWatchingItem,
+                                   followLiveItem, stopFollowingItem,
+                                   new SeparatorMenuItem(), exitItem);
         
         // View menu
         Menu viewMenu = new Menu("View");
@@ -102,10 +153,13 @@ public class OrionVisualizerApp extends Application {
         // Help menu
         Menu helpMenu = new Menu("Help");
         
+        MenuItem metricsItem = new MenuItem("Performance Metrics");
+        metricsItem.setOnAction(e -> showMetricsDialog());
+        
         MenuItem aboutItem = new MenuItem("About");
         aboutItem.setOnAction(e -> showAboutDialog());
         
-        helpMenu.getItems().add(aboutItem);
+        helpMenu.getItems().addAll(metricsItem, aboutItem);
         
         menuBar.getMenus().addAll(fileMenu, viewMenu, helpMenu);
         return menuBar;
@@ -169,6 +223,12 @@ public class OrionVisualizerApp extends Application {
         opponentField = new TextField();
         opponentField.setPromptText("Filter by opponent...");
         
+        // Minimum games per line, used when no player is given
+        Label minSupportLabel = new Label("Min Games (explorer):");
+        minSupportSpinner = new Spinner<>(0, 1000, 0);
+        minSupportSpinner.setEditable(true);
+        minSupportSpinner.setMaxWidth(Double.MAX_VALUE);
+        
         // Apply button
         Button applyButton = new Button("Apply Filters");
         applyButton.getStyleClass().add("button-primary");
@@ -195,6 +255,7 @@ public class OrionVisualizerApp extends Application {
             sideLabel, sideComboBox,
             dateLabel, dateBox,
             opponentLabel, opponentField,
+            minSupportLabel, minSupportSpinner,
             applyButton, resetButton,
             new Separator(),
             boardLabel, chessboardView
@@ -249,11 +310,13 @@ public class OrionVisualizerApp extends Application {
         statusLabel = new Label("Ready");
         HBox.setHgrow(statusLabel, Priority.ALWAYS);
         
+        stallLabel = new Label("UI stalls: 0");
+        
         progressBar = new ProgressBar();
         progressBar.setPrefWidth(200);
         progressBar.setVisible(false);
         
-        statusBar.getChildren().addAll(statusLabel, progressBar);
+        statusBar.getChildren().addAll(statusLabel, stallLabel, progressBar);
         return statusBar;
     }
 
@@ -264,7 +327,7 @@ public class OrionVisualizerApp extends Application {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Select PGN File");
         fileChooser.getExtensionFilters().add(
-            new FileChooser.ExtensionFilter("PGN Files", "*.pgn")
+            new FileChooser.ExtensionFilter("PGN Files", "*.pgn", "*.pgn.gz", "*.zip")
         );
         
         File pgnFile = fileChooser.showOpenDialog(primaryStage);
@@ -272,6 +335,23 @@ public class OrionVisualizerApp extends Application {
             return;
         }
         
+        if (PgnInputStreams.isCompressed(pgnFile)) {
+            // Archives are streamed into shards without extracting them first
+            FileChooser saveChooser = new FileChooser();
+            saveChooser.setTitle("Save Database As");
+            saveChooser.setInitialFileName(pgnBaseName(pgnFile) + ".orionshards");
+            saveChooser.getExtensionFilters().add(
+                new FileChooser.ExtensionFilter("Sharded OrionDB", "*.orionshards")
+            );
+            
+            File manifestFile = saveChooser.showSaveDialog(primaryStage);
+            if (manifestFile != null) {
+                controller.importPgnSharded(pgnFile, manifestFile,
+                    Runtime.getRuntime().availableProcessors());
+            }
+            return;
+        }
+        
         // Choose output location
         FileChooser saveChooser = new FileChooser();
         saveChooser.setTitle("Save Database As");
@@ -288,6 +368,102 @@ public class OrionVisualizerApp extends Application {
         controller.importPgn(pgnFile, dbFile);
     }
 
+    /**
+     * Handle sharded import action.
+     */
+    private void handleImportPgnSharded() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Select PGN File");
+        fileChooser.getExtensionFilters().add(
+            new FileChooser.ExtensionFilter("PGN Files", "*.pgn", "*.pgn.gz", "*.zip")
+        );
+        
+        File pgnFile = fileChooser.showOpenDialog(primaryStage);
+        if (pgnFile == null) {
+            return;
+        }
+        
+        // One shard per core by default
+        int cores = Runtime.getRuntime().availableProcessors();
+        Set<Integer> choices = new TreeSet<>(List.of(2, 4, 8, 16));
+        choices.add(cores);
+        ChoiceDialog<Integer> shardDialog = new ChoiceDialog<>(cores, choices);
+        shardDialog.setTitle("Sharded Import");
+        shardDialog.setHeaderText("Split the import into shards imported in parallel");
+        shardDialog.setContentText("Shards:");
+        Integer shardCount = shardDialog.showAndWait().orElse(null);
+        if (shardCount == null) {
+            return;
+        }
+        
+        // Choose manifest location; shard files are written next to it
+        FileChooser saveChooser = new FileChooser();
+        saveChooser.setTitle("Save Sharded Database As");
+        saveChooser.setInitialFileName(pgnBaseName(pgnFile) + ".orionshards");
+        saveChooser.getExtensionFilters().add(
+            new FileChooser.ExtensionFilter("Sharded OrionDB", "*.orionshards")
+        );
+        
+        File manifestFile = saveChooser.showSaveDialog(primaryStage);
+        if (manifestFile == null) {
+            return;
+        }
+        
+        controller.importPgnSharded(pgnFile, manifestFile, shardCount);
+    }
+
+    /**
+     * File name of a PGN file or archive without its extensions.
+     */
+    private static String pgnBaseName(File pgnFile) {
+        return pgnFile.getName().replaceFirst("(?i)(\\.pgn)?(\\.gz|\\.zip)?$", "");
+    }
+
+    /**
+     * Handle append PGN action.
+     */
+    private void handleAppendPgn() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Select PGN File to Append");
+        fileChooser.getExtensionFilters().add(
+            new FileChooser.ExtensionFilter("PGN Files", "*.pgn")
+        );
+        
+        File pgnFile = fileChooser.showOpenDialog(primaryStage);
+        if (pgnFile != null) {
+            controller.appendPgn(pgnFile);
+        }
+    }
+
+    /**
+     * Handle follow live PGN action.
+     */
+    private void handleFollowLivePgn() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Select PGN File to Follow");
+        fileChooser.getExtensionFilters().add(
+            new FileChooser.ExtensionFilter("PGN Files", "*.pgn")
+        );
+        
+        File pgnFile = fileChooser.showOpenDialog(primaryStage);
+        if (pgnFile != null) {
+            controller.followLivePgn(pgnFile);
+        }
+    }
+
+    /**
+     * Handle watch folder action.
+     */
+    private void handleWatchFolder() {
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Select Folder to Watch");
+        
+        File folder = directoryChooser.showDialog(primaryStage);
+        if (folder != null) {
+            controller.watchFolder(folder);
+        }
+    }
+
     /**
      * Handle load database action.
      */
@@ -295,7 +471,7 @@ public class OrionVisualizerApp extends Application {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Open Database");
         fileChooser.getExtensionFilters().add(
-            new FileChooser.ExtensionFilter("OrionDB Files", "*.oriondb")
+            new FileChooser.ExtensionFilter("OrionDB Files", "*.oriondb", "*.orionshards")
         );
         
         File dbFile = fileChooser.showOpenDialog(primaryStage);
@@ -323,6 +499,7 @@ public class OrionVisualizerApp extends Application {
         if (!opponent.isEmpty()) {
             filters.setOpponent(opponent);
         }
+        filters.setMinSupport(minSupportSpinner.getValue());
         
         controller.applyFilters(filters);
     }
@@ -336,8 +513,10 @@ public class OrionVisualizerApp extends Application {
         startDatePicker.setValue(LocalDate.of(1900, 1, 1));
         endDatePicker.setValue(LocalDate.now());
         opponentField.clear();
+        minSupportSpinner.getValueFactory().setValue(0);
         
-        controller.applyFilters(new FilterCriteria());
+        // Applying the empty filters would build the database-wide explorer tree
+        controller.clearTree();
     }
 
     /**
@@ -357,6 +536,17 @@ public class OrionVisualizerApp extends Application {
         alert.showAndWait();
     }
 
+    /**
+     * Show a snapshot of the recorded performance metrics.
+     */
+    private void showMetricsDialog() {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Performance Metrics");
+        alert.setHeaderText("Performance metrics snapshot");
+        alert.setContentText(MetricsService.getInstance().formatSnapshot());
+        alert.showAndWait();
+    }
+
     /**
      * Update status message.
      */
@@ -374,6 +564,15 @@ public class OrionVisualizerApp extends Application {
         }
     }
 
+    /**
+     * Set determinate progress while loading.
+     */
+    private void setProgress(double progress) {
+        if (progressBar.isVisible()) {
+            progressBar.setProgress(progress);
+        }
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -1,29 +1,46 @@
 package com.orion.visualizer.controller;
 
 import com.orion.visualizer.v2.controller.HistoricalAnalysisController;
+import com.orion.visualizer.v2.service.HistoricalAnalysisService;
+import com.orion.visualizer.v2.service.PlayerSearchService;
 import com.orion.visualizer.v3.view.RepertoireEditorView;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.scene.control.*;
 import javafx.scene.layout.BorderPane;
+import javafx.util.Duration;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Enhanced main controller with V2 and V3 mode support.
  * Extends the original V1 functionality with mode switching.
+ *
+ * Controllers and views of each mode are created on first use. Once the user
+ * has been idle for a while, the next mode is preloaded: its services are
+ * built on a background thread and its view on the FX thread afterwards.
  */
 public class EnhancedMainController {
-    private final MainController v1Controller;
-    private final HistoricalAnalysisController v2Controller;
-    private final RepertoireEditorView v3View;
+    private static final Duration IDLE_PRELOAD_DELAY = Duration.seconds(3);
+    
+    private MainController v1Controller;
+    private HistoricalAnalysisController v2Controller;
+    private RepertoireEditorView v3View;
+    private CompletableFuture<PlayerSearchService> playerSearchService;
     private final ModeManager modeManager;
+    private final PauseTransition idleTimer;
     
     private final BorderPane mainView;
     private final MenuBar menuBar;
     
     public EnhancedMainController() {
-        // Initialize controllers
-        this.v1Controller = new MainController();
-        this.v2Controller = new HistoricalAnalysisController();
-        this.v3View = new RepertoireEditorView();
+        // Controllers and views are created lazily by the mode manager
         this.modeManager = new ModeManager();
+        modeManager.registerView(ModeManager.Mode.V2_HISTORICAL_ANALYSIS, () -> getV2Controller().getView());
+        modeManager.registerView(ModeManager.Mode.V3_REPERTOIRE_EDITOR, this::getV3View);
+        
+        this.idleTimer = new PauseTransition(IDLE_PRELOAD_DELAY);
+        idleTimer.setOnFinished(e -> preloadNextMode());
         
         // Create main view
         this.mainView = new BorderPane();
@@ -35,6 +52,7 @@ public class EnhancedMainController {
         
         // Start in V1 mode
         modeManager.switchMode(ModeManager.Mode.V1_PERSONAL_ANALYSIS);
+        idleTimer.playFromStart();
     }
     
     /**
@@ -45,12 +63,69 @@ public class EnhancedMainController {
     }
     
     /**
-     * Get V1 controller.
+     * Get V1 controller, creating it on first use.
      */
     public MainController getV1Controller() {
+        if (v1Controller == null) {
+            v1Controller = new MainController();
+            v1Controller.setModeManager(modeManager);
+        }
         return v1Controller;
     }
     
+    /**
+     * Get V2 controller, creating it on first use.
+     */
+    private HistoricalAnalysisController getV2Controller() {
+        if (v2Controller == null) {
+            v2Controller = new HistoricalAnalysisController(
+                startPlayerSearchService().join(), new HistoricalAnalysisService());
+        }
+        return v2Controller;
+    }
+    
+    /**
+     * Get V3 view, creating it on first use.
+     */
+    private RepertoireEditorView getV3View() {
+        if (v3View == null) {
+            v3View = new RepertoireEditorView();
+        }
+        return v3View;
+    }
+    
+    /**
+     * Start building the player search service (and its sample data) in the background.
+     */
+    private CompletableFuture<PlayerSearchService> startPlayerSearchService() {
+        if (playerSearchService == null) {
+            playerSearchService = CompletableFuture.supplyAsync(PlayerSearchService::new);
+        }
+        return playerSearchService;
+    }
+    
+    /**
+     * Preload the next mode the user is likely to open.
+     */
+    private void preloadNextMode() {
+        ModeManager.Mode next = modeManager.nextModeToPreload();
+        if (next == null) {
+            return;
+        }
+        
+        // Background part first, then the view on the FX thread
+        CompletableFuture<?> services = next == ModeManager.Mode.V2_HISTORICAL_ANALYSIS
+            ? startPlayerSearchService()
+            : CompletableFuture.completedFuture(null);
+        services.whenComplete((result, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                System.err.println("Error preloading " + next + ": " + error.getMessage());
+                return;
+            }
+            modeManager.getView(next);
+        }));
+    }
+    
     /**
      * Create menu bar with mode switching.
      */
@@ -106,12 +181,13 @@ public class EnhancedMainController {
                     // This is handled by the app itself
                     break;
                 case V2_HISTORICAL_ANALYSIS:
-                    mainView.setCenter(v2Controller.getView());
-                    break;
                 case V3_REPERTOIRE_EDITOR:
-                    mainView.setCenter(v3View);
+                    mainView.setCenter(modeManager.getView(newMode));
                     break;
             }
+            
+            // Preload once the user settles in the new mode
+            idleTimer.playFromStart();
         });
     }
     
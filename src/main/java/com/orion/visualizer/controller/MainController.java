@@ -2,6 +2,7 @@ package com.orion.visualizer.controller;
 
 import com.orion.visualizer.model.*;
 import com.orion.visualizer.service.*;
+import com.orion.visualizer.util.Statistics;
 import com.orion.visualizer.view.*;
 import javafx.application.Platform;
 import javafx.concurrent.Task;
@@ -13,21 +14,29 @@ import java.util.function.Consumer;
  * Main controller coordinating the application logic.
  */
 public class MainController {
+    private static final int MAX_CONCURRENT_INGESTS = 2;
+    private static final int MAX_POSITION_GAMES = 500;
+    private static final int DEEPEN_PLIES = 10;
+    
     private final DatabaseService databaseService;
     private final AnalysisService analysisService;
     private final ChessEngineService displayEngine;
+    private final UiUpdateBus updateBus;
+    private ModeManager modeManager;
+    private ModeTask<OpeningTreeNode> treeBuildTask;
+    private PgnFolderWatcher folderWatcher;
+    private PgnTailer liveTailer;
+    private int previewRequests;
     
     private ChessboardView chessboardView;
     private OpeningTreeView openingTreeView;
     private GameListView gameListView;
-    
-    private Consumer<String> statusCallback;
-    private Consumer<Boolean> loadingCallback;
 
     public MainController() {
         this.databaseService = DatabaseService.getInstance();
         this.analysisService = new AnalysisService(databaseService);
         this.displayEngine = new ChessEngineService();
+        this.updateBus = UiUpdateBus.getInstance();
     }
 
     /**
@@ -53,12 +62,35 @@ public class MainController {
         
         // When a game is selected, could show full game (future feature)
         gameListView.setOnGameSelected(this::onGameSelected);
+        
+        // Position lookups from the board's context menu
+        chessboardView.setOnShowGamesForPosition(this::showGamesForPosition);
+        
+        // Extend a leaf past the build depth
+        openingTreeView.setOnDeepenRequested(this::deepenLine);
+        
+        // Show newly built trees
+        updateBus.subscribe(UiUpdateBus.TREE, this::showTree);
+    }
+
+    /**
+     * Display a newly built tree.
+     */
+    private void showTree(OpeningTreeNode root) {
+        openingTreeView.setTreeRoot(root);
+        openingTreeView.expandToDepth(2);
+        
+        // Reset board to starting position
+        displayEngine.reset();
+        chessboardView.setEngine(displayEngine);
+        
+        updateStatus("Tree built: " + analysisService.getTreeStatistics());
     }
 
     /**
      * Handle tree node selection.
      */
-    private void onTreeNodeSelected(OpeningTreeNode node) {
+    private void onTreeNodeSelected(OpeningNode node) {
         if (node == null) {
             return;
         }
@@ -75,12 +107,31 @@ public class MainController {
         gameListView.setGames(node.getGames());
         
         // Update status
-        updateStatus(String.format("Position: %s | Games: %d | Win: %.1f%% Draw: %.1f%% Loss: %.1f%%",
+        String status = String.format("Position: %s | Games: %d | Win: %.1f%% Draw: %.1f%% Loss: %.1f%%",
             node.getMove() != null ? node.getMove() : "Start",
             node.getGameCount(),
             node.getWinPercentage(),
             node.getDrawPercentage(),
-            node.getLossPercentage()));
+            node.getLossPercentage());
+        
+        // Preview trees hold sample counts; show the estimate and its uncertainty
+        if (openingTreeView.isPreview()) {
+            double[] win = Statistics.wilsonInterval(node.getWins(), node.getGameCount(), Statistics.Z_95);
+            status += String.format(" | Preview: %d sampled games, win rate 95%% CI %.1f-%.1f%%",
+                node.getGameCount(), win[0] * 100, win[1] * 100);
+        }
+        
+        // Compare a player's line with the whole database once an explorer tree exists
+        FilterCriteria filters = analysisService.getCurrentFilters();
+        OpeningTreeNode baseline = analysisService.getBaselineNode(movePath);
+        if (baseline != null && filters != null && !filters.isExplorer()) {
+            status += String.format(" | DB: %d games, White W/D/L %.1f/%.1f/%.1f%%",
+                baseline.getGameCount(),
+                baseline.getWinPercentage(),
+                baseline.getDrawPercentage(),
+                baseline.getLossPercentage());
+        }
+        updateStatus(status);
     }
 
     /**
@@ -91,6 +142,94 @@ public class MainController {
             game.getWhite(), game.getBlack(), game.getDate(), game.getResult()));
     }
 
+    /**
+     * List the games reaching a position, using the position index.
+     */
+    public void showGamesForPosition(String fen) {
+        if (!databaseService.isDatabaseLoaded()) {
+            updateStatus("No database loaded");
+            return;
+        }
+        
+        Task<List<GameReference>> task = new Task<>() {
+            private PositionStats stats;
+            
+            @Override
+            protected List<GameReference> call() throws Exception {
+                stats = analysisService.explorePosition(fen);
+                return analysisService.getGameReferences(stats.getGameIds(), MAX_POSITION_GAMES);
+            }
+            
+            @Override
+            protected void succeeded() {
+                gameListView.setGames(getValue());
+                StringBuilder moves = new StringBuilder();
+                for (PositionStats.MoveStats move : stats.getMoves()) {
+                    if (moves.length() > 0) {
+                        moves.append(", ");
+                    }
+                    moves.append(move);
+                    if (moves.length() > 120) {
+                        break;
+                    }
+                }
+                String shown = stats.getGameCount() > getValue().size()
+                    ? " (first " + getValue().size() + " shown)" : "";
+                updateStatus("Position reached in " + stats.getGameCount() + " games" + shown
+                    + (moves.length() > 0 ? " | " + moves : ""));
+            }
+        };
+        
+        task.setOnFailed(e -> updateStatus("Position lookup failed: " + task.getException().getMessage()));
+        
+        new Thread(task).start();
+    }
+
+    /**
+     * Extend a leaf of the displayed tree by DEEPEN_PLIES plies, replaying
+     * only the games stored at it.
+     */
+    public void deepenLine(OpeningNode leaf) {
+        if (openingTreeView.isPreview()) {
+            updateStatus("Wait for the exact tree to deepen lines");
+            return;
+        }
+        // Live trees and trees replaced meanwhile are not the built tree
+        if (openingTreeView.getRoot() == null
+                || openingTreeView.getRoot().getValue() != analysisService.getCurrentTree()) {
+            updateStatus("Only lines of the built tree can be deepened");
+            return;
+        }
+        
+        int build = analysisService.getCurrentTreeBuild();
+        List<String> movePath = leaf.getMovePath();
+        
+        Task<OpeningTreeNode> task = new Task<>() {
+            private int added;
+            
+            @Override
+            protected OpeningTreeNode call() throws Exception {
+                OpeningTreeNode subtree = analysisService.deepenLine(movePath, leaf.getGames(), DEEPEN_PLIES);
+                added = subtree.countNodes() - 1;
+                return analysisService.spliceDeepenedLine(build, movePath, subtree);
+            }
+            
+            @Override
+            protected void succeeded() {
+                // Null if another tree was built meanwhile
+                if (getValue() != null) {
+                    openingTreeView.refreshPath(getValue(), movePath);
+                    updateStatus("Line deepened: " + added + " positions added below " + leaf.getMove());
+                }
+            }
+        };
+        
+        task.setOnFailed(e -> updateStatus("Error deepening line: " + task.getException().getMessage()));
+        
+        updateStatus("Deepening line...");
+        new Thread(task).start();
+    }
+
     /**
      * Import PGN file and build database.
      */
@@ -101,18 +240,20 @@ public class MainController {
                 updateMessage("Importing PGN file...");
                 setLoading(true);
                 
+                // Called per game: publish through the coalescing bus
                 var stats = databaseService.createDatabaseFromPgn(
                     pgnFile, 
                     dbFile,
                     (current, total, message) -> {
-                        updateMessage(message);
+                        updateStatus(message);
                         if (total > 0) {
-                            updateProgress(current, total);
+                            updateBus.publish(UiUpdateBus.PROGRESS, (double) current / total);
                         }
                     }
                 );
                 
-                updateMessage("Import complete: " + stats.getGamesImported() + " games");
+                updateMessage("Import complete: " + stats.getGamesImported() + " games, "
+                    + stats.getDuplicatesDropped() + " duplicates dropped");
                 return null;
             }
         };
@@ -120,8 +261,42 @@ public class MainController {
         task.setOnSucceeded(e -> {
             setLoading(false);
             updateStatus("Database created successfully");
-            // Auto-build tree with default filters
-            buildTree(new FilterCriteria());
+            clearTree();
+        });
+        
+        task.setOnFailed(e -> {
+            setLoading(false);
+            updateStatus("Error importing PGN: " + task.getException().getMessage());
+        });
+        
+        new Thread(task).start();
+    }
+
+    /**
+     * Import PGN file into a sharded database, importing shards in parallel.
+     */
+    public void importPgnSharded(java.io.File pgnFile, java.io.File manifestFile, int shardCount) {
+        Task<ImportSummary> task = new Task<>() {
+            @Override
+            protected ImportSummary call() throws Exception {
+                setLoading(true);
+                updateStatus("Importing PGN file into " + shardCount + " shards...");
+                return databaseService.createShardedDatabaseFromPgn(
+                    pgnFile,
+                    manifestFile,
+                    shardCount,
+                    (fraction, message) -> {
+                        updateStatus(message);
+                        updateBus.publish(UiUpdateBus.PROGRESS, fraction);
+                    }
+                );
+            }
+        };
+        
+        task.setOnSucceeded(e -> {
+            setLoading(false);
+            updateStatus("Sharded database created: " + task.getValue());
+            clearTree();
         });
         
         task.setOnFailed(e -> {
@@ -132,6 +307,159 @@ public class MainController {
         new Thread(task).start();
     }
 
+    /**
+     * Append the games of a PGN file to the open database as a new shard.
+     * The displayed tree is extended by replaying only the appended games.
+     */
+    public void appendPgn(java.io.File pgnFile) {
+        if (!databaseService.isDatabaseLoaded()) {
+            updateStatus("No database loaded");
+            return;
+        }
+        
+        Task<ImportSummary> task = new Task<>() {
+            @Override
+            protected ImportSummary call() throws Exception {
+                setLoading(true);
+                updateStatus("Appending " + pgnFile.getName() + "...");
+                return databaseService.appendPgn(pgnFile, (fraction, message) -> {
+                    updateStatus(message);
+                    updateBus.publish(UiUpdateBus.PROGRESS, fraction);
+                });
+            }
+        };
+        
+        task.setOnSucceeded(e -> {
+            setLoading(false);
+            refreshAppended(pgnFile, task.getValue());
+        });
+        
+        task.setOnFailed(e -> {
+            setLoading(false);
+            updateStatus("Error appending PGN: " + task.getException().getMessage());
+        });
+        
+        new Thread(task).start();
+    }
+
+    /**
+     * Extend the displayed tree with the games of an appended shard.
+     */
+    private void refreshAppended(java.io.File pgnFile, ImportSummary summary) {
+        String appendedMessage = "Appended " + summary.getGamesImported() + " games from " + pgnFile.getName();
+        if (analysisService.getCurrentTree() == null) {
+            updateStatus(appendedMessage);
+            return;
+        }
+        
+        Task<OpeningTreeNode> task = new Task<>() {
+            @Override
+            protected OpeningTreeNode call() throws Exception {
+                return analysisService.addAppendedShard(summary.getFirstShard());
+            }
+        };
+        
+        task.setOnSucceeded(e -> {
+            // Null if the current tree already has the games
+            if (task.getValue() != null) {
+                openingTreeView.refreshNodes(task.getValue());
+            }
+            updateStatus(appendedMessage + " | " + analysisService.getTreeStatistics());
+        });
+        
+        task.setOnFailed(e -> updateStatus("Error updating tree: " + task.getException().getMessage()));
+        
+        new Thread(task).start();
+    }
+
+    /**
+     * Watch a folder and append PGN files dropped into it to the open database.
+     */
+    public void watchFolder(java.io.File folder) {
+        stopWatching();
+        
+        folderWatcher = new PgnFolderWatcher(folder, databaseService, MAX_CONCURRENT_INGESTS,
+            new PgnFolderWatcher.IngestListener() {
+                @Override
+                public void onIngested(java.io.File pgnFile, ImportSummary summary) {
+                    // Called on an import thread; tree updates go through the FX thread
+                    Platform.runLater(() -> refreshAppended(pgnFile, summary));
+                }
+                
+                @Override
+                public void onError(java.io.File pgnFile, Exception error) {
+                    updateStatus("Error ingesting " + pgnFile.getName() + ": " + error.getMessage());
+                }
+            });
+        
+        try {
+            folderWatcher.start();
+            updateStatus("Watching " + folder + " for PGN files");
+        } catch (java.io.IOException e) {
+            folderWatcher = null;
+            updateStatus("Error watching folder: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Follow a PGN file that keeps growing and show its games in a live tree,
+     * filtered like the current tree. New games appear without a rebuild.
+     */
+    public void followLivePgn(java.io.File pgnFile) {
+        stopFollowing();
+        
+        FilterCriteria filters = analysisService.getCurrentFilters();
+        liveTailer = new PgnTailer(pgnFile, filters, AnalysisService.MAX_OPENING_DEPTH,
+            new PgnTailer.TailListener() {
+                private int gameCount;
+                
+                @Override
+                public void onGamesAdded(List<List<String>> movePaths) {
+                    gameCount += movePaths.size();
+                    String message = "Live: " + gameCount + " games from " + pgnFile.getName();
+                    // Called on the tailer thread; only the changed paths are refreshed
+                    Platform.runLater(() -> {
+                        if (liveTailer != null && openingTreeView.getRoot() != null
+                                && openingTreeView.getRoot().getValue() == liveTailer.getTree()) {
+                            openingTreeView.refreshPaths(movePaths);
+                        }
+                    });
+                    updateStatus(message);
+                }
+                
+                @Override
+                public void onError(Exception error) {
+                    updateStatus("Error following " + pgnFile.getName() + ": " + error.getMessage());
+                }
+            });
+        
+        openingTreeView.setTreeRoot(liveTailer.getTree());
+        displayEngine.reset();
+        chessboardView.setEngine(displayEngine);
+        liveTailer.start();
+        updateStatus("Following " + pgnFile);
+    }
+
+    /**
+     * Stop following the live PGN file, if any. The live tree stays displayed.
+     */
+    public void stopFollowing() {
+        if (liveTailer != null) {
+            liveTailer.stop();
+            liveTailer = null;
+        }
+    }
+
+    /**
+     * Stop watching the ingestion folder, if any.
+     */
+    public void stopWatching() {
+        if (folderWatcher != null) {
+            folderWatcher.stop();
+            folderWatcher = null;
+        }
+    }
+
     /**
      * Load existing database.
      */
@@ -149,8 +477,7 @@ public class MainController {
         task.setOnSucceeded(e -> {
             setLoading(false);
             updateStatus("Database loaded: " + databaseService.getGameCount() + " games");
-            // Auto-build tree with default filters
-            buildTree(new FilterCriteria());
+            clearTree();
         });
         
         task.setOnFailed(e -> {
@@ -161,10 +488,38 @@ public class MainController {
         new Thread(task).start();
     }
 
+    /**
+     * Show an empty tree until filters are applied, e.g. for a newly opened
+     * database; building an explorer tree right away would replay every game.
+     */
+    public void clearTree() {
+        if (treeBuildTask != null) {
+            treeBuildTask.cancel();
+        }
+        openingTreeView.setTreeRoot(analysisService.clearTree());
+        displayEngine.reset();
+        chessboardView.setEngine(displayEngine);
+    }
+
+    /**
+     * Set the mode manager owning this controller's background work. Tree builds
+     * then run as V1 tasks that keep going, throttled, while another mode is shown.
+     */
+    public void setModeManager(ModeManager modeManager) {
+        this.modeManager = modeManager;
+    }
+
     /**
      * Build opening tree with filters.
      */
     public void buildTree(FilterCriteria filters) {
+        showPreview(filters);
+        
+        if (modeManager != null) {
+            submitTreeBuild(filters);
+            return;
+        }
+        
         Task<OpeningTreeNode> task = new Task<>() {
             @Override
             protected OpeningTreeNode call() throws Exception {
@@ -176,15 +531,7 @@ public class MainController {
         
         task.setOnSucceeded(e -> {
             setLoading(false);
-            OpeningTreeNode root = task.getValue();
-            openingTreeView.setTreeRoot(root);
-            openingTreeView.expandToDepth(2);
-            
-            // Reset board to starting position
-            displayEngine.reset();
-            chessboardView.setEngine(displayEngine);
-            
-            updateStatus("Tree built: " + analysisService.getTreeStatistics());
+            updateBus.publish(UiUpdateBus.TREE, task.getValue());
         });
         
         task.setOnFailed(e -> {
@@ -196,6 +543,81 @@ public class MainController {
         new Thread(task).start();
     }
 
+    /**
+     * Show a tree built from a sample of the games until the exact tree is
+     * ready. Nothing is shown if the sample would hold every candidate game.
+     */
+    private void showPreview(FilterCriteria filters) {
+        int build = analysisService.getCurrentTreeBuild();
+        int request = ++previewRequests;
+        
+        Task<TreePreview> task = new Task<>() {
+            @Override
+            protected TreePreview call() throws Exception {
+                return analysisService.buildPreviewTree(filters, AnalysisService.DEFAULT_PREVIEW_SAMPLE);
+            }
+            
+            @Override
+            protected void succeeded() {
+                // Drop the preview if a newer one was requested or the exact tree is done
+                TreePreview preview = getValue();
+                if (request != previewRequests || analysisService.getCurrentTreeBuild() != build
+                        || preview.isExact()) {
+                    return;
+                }
+                openingTreeView.setTreeRoot(preview.getRoot(), preview.getSampleFraction());
+                openingTreeView.expandToDepth(2);
+                updateStatus("Showing " + preview + "; building exact tree...");
+            }
+        };
+        
+        // The exact build reports errors; a failed preview is only logged
+        task.setOnFailed(e -> System.err.println("Error building preview: " + task.getException().getMessage()));
+        
+        new Thread(task).start();
+    }
+
+    /**
+     * Build opening tree as a V1 mode task.
+     */
+    private void submitTreeBuild(FilterCriteria filters) {
+        // A newer build supersedes one still running
+        if (treeBuildTask != null) {
+            treeBuildTask.cancel();
+        }
+        
+        setLoading(true);
+        updateStatus("Building opening tree...");
+        
+        treeBuildTask = modeManager.submit(ModeManager.Mode.V1_PERSONAL_ANALYSIS, new ModeTask<>("tree-build") {
+            @Override
+            protected OpeningTreeNode call() throws Exception {
+                updateProgress(-1, "Building opening tree...");
+                return analysisService.buildTree(filters, this::checkpoint);
+            }
+            
+            @Override
+            protected void progressChanged(double progress, String message) {
+                // Restores the indicator when switching back to V1 mid-build
+                setLoading(true);
+                updateStatus(message);
+            }
+            
+            @Override
+            protected void succeeded(OpeningTreeNode root) {
+                setLoading(false);
+                updateBus.publish(UiUpdateBus.TREE, root);
+            }
+            
+            @Override
+            protected void failed(Throwable error) {
+                setLoading(false);
+                updateStatus("Error building tree: " + error.getMessage());
+                error.printStackTrace();
+            }
+        });
+    }
+
     /**
      * Apply filters and rebuild tree.
      */
@@ -235,31 +657,34 @@ public class MainController {
      * Set status callback.
      */
     public void setStatusCallback(Consumer<String> callback) {
-        this.statusCallback = callback;
+        updateBus.subscribe(UiUpdateBus.STATUS, callback);
     }
 
     /**
      * Set loading callback.
      */
     public void setLoadingCallback(Consumer<Boolean> callback) {
-        this.loadingCallback = callback;
+        updateBus.subscribe(UiUpdateBus.LOADING, callback);
+    }
+
+    /**
+     * Set progress callback (0-1, or negative for indeterminate).
+     */
+    public void setProgressCallback(Consumer<Double> callback) {
+        updateBus.subscribe(UiUpdateBus.PROGRESS, callback);
     }
 
     /**
      * Update status message.
      */
     private void updateStatus(String message) {
-        if (statusCallback != null) {
-            Platform.runLater(() -> statusCallback.accept(message));
-        }
+        updateBus.publish(UiUpdateBus.STATUS, message);
     }
 
     /**
      * Set loading state.
      */
     private void setLoading(boolean loading) {
-        if (loadingCallback != null) {
-            Platform.runLater(() -> loadingCallback.accept(loading));
-        }
+        updateBus.publish(UiUpdateBus.LOADING, loading);
     }
 }
@@ -1,7 +1,25 @@
 package com.orion.visualizer.controller;
 
+import com.orion.visualizer.service.MetricsService;
+import javafx.application.Platform;
+import javafx.scene.Node;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
 /**
  * Manager for switching between different application modes.
+ * Mode views are registered as factories and built on first use, so that
+ * modes the user never opens cost nothing at startup.
+ *
+ * Each mode also owns a registry of long-running ModeTasks. Tasks of modes
+ * that are not visible are throttled to the configured background CPU share,
+ * and their progress and results are delivered when the mode is shown again.
  */
 public class ModeManager {
     
@@ -29,8 +47,16 @@ public class ModeManager {
         }
     }
     
-    private Mode currentMode;
+    public static final double DEFAULT_BACKGROUND_CPU_SHARE = 0.25;
+    
+    // Read by task threads
+    private volatile Mode currentMode;
+    private volatile double backgroundCpuShare = DEFAULT_BACKGROUND_CPU_SHARE;
     private ModeChangeListener listener;
+    private final Map<Mode, List<ModeTask<?>>> tasks = new EnumMap<>(Mode.class);
+    private final Set<ModeTask<?>> progressPending = ConcurrentHashMap.newKeySet();
+    private final Map<Mode, Supplier<? extends Node>> viewFactories = new EnumMap<>(Mode.class);
+    private final Map<Mode, Node> views = new EnumMap<>(Mode.class);
     
     public ModeManager() {
         this.currentMode = Mode.V1_PERSONAL_ANALYSIS;
@@ -52,11 +78,175 @@ public class ModeManager {
         }
         
         Mode oldMode = currentMode;
-        currentMode = newMode;
+        synchronized (this) {
+            currentMode = newMode;
+            // Wake tasks paused until their mode is visible
+            notifyAll();
+        }
+        
+        // Build the view before listeners ask for it
+        getView(newMode);
         
         if (listener != null) {
             listener.onModeChanged(oldMode, newMode);
         }
+        
+        // Hand over what the mode's tasks did while it was hidden
+        for (ModeTask<?> task : getTasks(newMode)) {
+            deliverIfVisible(task);
+        }
+    }
+    
+    /**
+     * Start a task owned by the given mode.
+     */
+    public <T> ModeTask<T> submit(Mode mode, ModeTask<T> task) {
+        synchronized (this) {
+            tasks.computeIfAbsent(mode, m -> new ArrayList<>()).add(task);
+        }
+        task.start(this, mode);
+        return task;
+    }
+    
+    /**
+     * Get the tasks of a mode that are running or waiting for delivery.
+     */
+    public synchronized List<ModeTask<?>> getTasks(Mode mode) {
+        List<ModeTask<?>> modeTasks = tasks.get(mode);
+        return modeTasks != null ? new ArrayList<>(modeTasks) : new ArrayList<>();
+    }
+    
+    /**
+     * Set the CPU share (0-1) given to tasks of modes that are not visible.
+     * A share of 0 pauses them until their mode is shown, 1 does not throttle.
+     */
+    public void setBackgroundCpuShare(double share) {
+        synchronized (this) {
+            backgroundCpuShare = Math.max(0, Math.min(1, share));
+            notifyAll();
+        }
+    }
+    
+    /**
+     * Get the CPU share given to tasks of modes that are not visible.
+     */
+    public double getBackgroundCpuShare() {
+        return backgroundCpuShare;
+    }
+    
+    /**
+     * Check whether a mode is the one in front.
+     */
+    public boolean isVisible(Mode mode) {
+        return currentMode == mode;
+    }
+    
+    /**
+     * Block a task thread while its mode is hidden and background work is paused.
+     */
+    synchronized void awaitVisible(Mode mode) throws InterruptedException {
+        while (currentMode != mode && backgroundCpuShare <= 0) {
+            wait();
+        }
+    }
+    
+    /**
+     * Coalesce progress updates of a task into one FX thread delivery.
+     */
+    void progressUpdated(ModeTask<?> task) {
+        if (progressPending.add(task)) {
+            Platform.runLater(() -> {
+                progressPending.remove(task);
+                if (isVisible(task.getMode()) && !task.isDone()) {
+                    task.deliver();
+                }
+            });
+        }
+    }
+    
+    /**
+     * Called on the task thread when a task has finished.
+     */
+    void taskFinished(ModeTask<?> task) {
+        Platform.runLater(() -> deliverIfVisible(task));
+    }
+    
+    /**
+     * Deliver a task's progress or outcome if its mode is visible. FX thread only.
+     */
+    private void deliverIfVisible(ModeTask<?> task) {
+        if (!isVisible(task.getMode())) {
+            return;
+        }
+        
+        if (task.isDone()) {
+            synchronized (this) {
+                List<ModeTask<?>> modeTasks = tasks.get(task.getMode());
+                if (modeTasks == null || !modeTasks.remove(task)) {
+                    return; // Already delivered
+                }
+            }
+        }
+        
+        try {
+            task.deliver();
+        } catch (Exception e) {
+            System.err.println("Error delivering task " + task.getName() + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Register the factory building a mode's view on first use.
+     */
+    public void registerView(Mode mode, Supplier<? extends Node> factory) {
+        viewFactories.put(mode, factory);
+    }
+    
+    /**
+     * Get a mode's view, building it if needed. Must be called on the FX thread.
+     *
+     * @return The view, or null if no factory is registered for the mode
+     */
+    public Node getView(Mode mode) {
+        Node view = views.get(mode);
+        if (view != null) {
+            return view;
+        }
+        
+        Supplier<? extends Node> factory = viewFactories.get(mode);
+        if (factory == null) {
+            return null;
+        }
+        
+        long start = System.nanoTime();
+        view = factory.get();
+        views.put(mode, view);
+        MetricsService.getInstance().setGauge("mode." + mode.name().toLowerCase() + ".buildMs",
+                                              (System.nanoTime() - start) / 1_000_000);
+        return view;
+    }
+    
+    /**
+     * Check whether a mode's view has been built.
+     */
+    public boolean isViewLoaded(Mode mode) {
+        return views.containsKey(mode);
+    }
+    
+    /**
+     * Get the next mode after the current one whose view is registered but not built yet.
+     *
+     * @return The mode to preload, or null if every registered view is built
+     */
+    public Mode nextModeToPreload() {
+        Mode[] modes = Mode.values();
+        for (int i = 1; i < modes.length; i++) {
+            Mode mode = modes[(currentMode.ordinal() + i) % modes.length];
+            if (viewFactories.containsKey(mode) && !isViewLoaded(mode)) {
+                return mode;
+            }
+        }
+        return null;
     }
     
     /**
@@ -0,0 +1,199 @@
+package com.orion.visualizer.controller;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-running work owned by one application mode.
+ *
+ * Submitted through ModeManager.submit, the work keeps running when another
+ * mode is in front, but throttled: each call to checkpoint() lowers the thread
+ * priority and sleeps long enough to keep the task within the manager's
+ * background CPU share (a share of 0 pauses it until its mode is visible).
+ * Progress, result and failure callbacks run on the FX thread, and only while
+ * the owning mode is visible; anything that happens in the background is
+ * delivered when the user switches back.
+ */
+public abstract class ModeTask<T> {
+    /** Maximum uninterrupted run time in background before throttling. */
+    private static final long SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    public enum State {
+        PENDING, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    private final String name;
+    private ModeManager manager;
+    private ModeManager.Mode mode;
+    private Thread thread;
+
+    // Written by the worker, read on the FX thread
+    private volatile State state = State.PENDING;
+    private volatile double progress = -1;
+    private volatile String message;
+    private volatile T result;
+    private volatile Throwable error;
+    private long sliceStart;
+
+    protected ModeTask(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Do the work on the task's own thread. Call checkpoint() regularly.
+     */
+    protected abstract T call() throws Exception;
+
+    /**
+     * Called on the FX thread with the result once the owning mode is visible.
+     */
+    protected void succeeded(T result) {
+    }
+
+    /**
+     * Called on the FX thread with the failure once the owning mode is visible.
+     */
+    protected void failed(Throwable error) {
+    }
+
+    /**
+     * Called on the FX thread with the latest progress while the owning mode is visible.
+     */
+    protected void progressChanged(double progress, String message) {
+    }
+
+    /**
+     * Yield to the foreground mode if needed. Cheap when the owning mode is visible.
+     *
+     * @throws CancellationException if the task was cancelled
+     */
+    public final void checkpoint() {
+        if (Thread.currentThread().isInterrupted() || state == State.CANCELLED) {
+            throw new CancellationException(name + " cancelled");
+        }
+
+        long now = System.nanoTime();
+        if (manager.isVisible(mode)) {
+            thread.setPriority(Thread.NORM_PRIORITY);
+            sliceStart = now;
+            return;
+        }
+
+        thread.setPriority(Thread.MIN_PRIORITY);
+        try {
+            double share = manager.getBackgroundCpuShare();
+            if (share <= 0) {
+                manager.awaitVisible(mode);
+            } else if (share < 1 && now - sliceStart >= SLICE_NANOS) {
+                // Sleep in proportion to the slice just used
+                long sleepNanos = (long) ((now - sliceStart) * (1 - share) / share);
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } else {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException(name + " cancelled");
+        }
+        sliceStart = System.nanoTime();
+    }
+
+    /**
+     * Report progress (0-1, or negative for indeterminate). Safe to call from any thread.
+     */
+    protected final void updateProgress(double progress, String message) {
+        this.progress = progress;
+        this.message = message;
+        if (manager != null) {
+            manager.progressUpdated(this);
+        }
+    }
+
+    /**
+     * Cancel the task, interrupting its thread.
+     */
+    public void cancel() {
+        if (state == State.PENDING || state == State.RUNNING) {
+            state = State.CANCELLED;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ModeManager.Mode getMode() {
+        return mode;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public double getProgress() {
+        return progress;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isDone() {
+        return state == State.SUCCEEDED || state == State.FAILED || state == State.CANCELLED;
+    }
+
+    /**
+     * Start the task on its own thread. Called by ModeManager.
+     */
+    void start(ModeManager manager, ModeManager.Mode mode) {
+        this.manager = manager;
+        this.mode = mode;
+        this.thread = new Thread(this::run, "mode-task-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        sliceStart = System.nanoTime();
+        if (state == State.PENDING) {
+            state = State.RUNNING;
+        }
+        try {
+            T value = call();
+            if (state == State.RUNNING) {
+                result = value;
+                state = State.SUCCEEDED;
+            }
+        } catch (CancellationException e) {
+            state = State.CANCELLED;
+        } catch (Throwable t) {
+            if (state == State.RUNNING) {
+                error = t;
+                state = State.FAILED;
+            }
+        }
+        manager.taskFinished(this);
+    }
+
+    /**
+     * Invoke the callbacks for the current state. Called by ModeManager on the FX thread.
+     */
+    void deliver() {
+        switch (state) {
+            case SUCCEEDED:
+                succeeded(result);
+                break;
+            case FAILED:
+                failed(error);
+                break;
+            case RUNNING:
+                progressChanged(progress, message);
+                break;
+            default:
+                break;
+        }
+    }
+}
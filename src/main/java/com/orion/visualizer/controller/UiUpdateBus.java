@@ -0,0 +1,125 @@
+package com.orion.visualizer.controller;
+
+import com.orion.visualizer.model.OpeningTreeNode;
+import com.orion.visualizer.service.MetricsService;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Coalescing dispatcher for UI updates published from any thread.
+ *
+ * Only the latest value per channel is kept, and pending values are delivered
+ * to subscribers on the FX thread at most once per pulse. Controllers publish
+ * here instead of calling Platform.runLater for every status or progress change.
+ * Singleton pattern so that all controllers share the same channels.
+ */
+public class UiUpdateBus {
+    public static final Channel<String> STATUS = new Channel<>("status");
+    public static final Channel<Boolean> LOADING = new Channel<>("loading");
+    public static final Channel<Double> PROGRESS = new Channel<>("progress");
+    public static final Channel<OpeningTreeNode> TREE = new Channel<>("tree");
+
+    private static final Object NULL_VALUE = new Object();
+    private static UiUpdateBus instance;
+
+    private final Map<Channel<?>, Object> pending = new ConcurrentHashMap<>();
+    private final Map<Channel<?>, List<Consumer<Object>>> subscribers = new ConcurrentHashMap<>();
+    private final List<Channel<?>> channelOrder = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final MetricsService metrics = MetricsService.getInstance();
+    private final AnimationTimer pulseFlusher = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            flush();
+        }
+    };
+
+    private UiUpdateBus() {
+    }
+
+    public static synchronized UiUpdateBus getInstance() {
+        if (instance == null) {
+            instance = new UiUpdateBus();
+        }
+        return instance;
+    }
+
+    /**
+     * Subscribe to a channel. The consumer is always called on the FX thread.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void subscribe(Channel<T> channel, Consumer<? super T> consumer) {
+        subscribers.computeIfAbsent(channel, c -> {
+            channelOrder.add(c);
+            return new CopyOnWriteArrayList<>();
+        }).add((Consumer<Object>) consumer);
+    }
+
+    /**
+     * Publish a value, replacing any value not yet delivered on that channel.
+     * Safe to call from any thread.
+     */
+    public <T> void publish(Channel<T> channel, T value) {
+        pending.put(channel, value != null ? value : NULL_VALUE);
+        metrics.increment("ui.bus.published");
+
+        if (flushScheduled.compareAndSet(false, true)) {
+            // The timer fires on the next pulse; starting it must happen on the FX thread
+            Platform.runLater(pulseFlusher::start);
+        }
+    }
+
+    /**
+     * Deliver the latest pending value of every channel.
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        metrics.increment("ui.bus.flushes");
+
+        for (Channel<?> channel : channelOrder) {
+            Object value = pending.remove(channel);
+            if (value == null) {
+                continue;
+            }
+            Object delivered = value == NULL_VALUE ? null : value;
+            for (Consumer<Object> consumer : subscribers.get(channel)) {
+                try {
+                    consumer.accept(delivered);
+                } catch (Exception e) {
+                    System.err.println("Error delivering " + channel + " update: " + e.getMessage());
+                }
+            }
+        }
+
+        // Values published to channels nobody listens to are dropped
+        pending.keySet().removeIf(channel -> !subscribers.containsKey(channel));
+    }
+
+    /**
+     * Typed update channel.
+     */
+    public static final class Channel<T> {
+        private final String name;
+
+        public Channel(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -11,6 +11,7 @@ public class FilterCriteria {
     private LocalDate startDate;
     private LocalDate endDate;
     private String opponent;
+    private int minSupport;
 
     public FilterCriteria() {
         this.side = PlayerSide.BOTH;
@@ -58,6 +59,24 @@ public class FilterCriteria {
         this.opponent = opponent;
     }
 
+    /**
+     * Get the minimum number of games a line needs to stay in an explorer tree.
+     */
+    public int getMinSupport() {
+        return minSupport;
+    }
+
+    public void setMinSupport(int minSupport) {
+        this.minSupport = Math.max(0, minSupport);
+    }
+
+    /**
+     * Check whether these filters select the database-wide explorer (no player given).
+     */
+    public boolean isExplorer() {
+        return playerName == null || playerName.trim().isEmpty();
+    }
+
     /**
      * Check if a date is within the filter range.
      */
@@ -83,7 +102,7 @@ public class FilterCriteria {
 
     @Override
     public String toString() {
-        return String.format("FilterCriteria{player='%s', side=%s, dates=%s to %s, opponent='%s'}",
-                playerName, side, startDate, endDate, opponent);
+        return String.format("FilterCriteria{player='%s', side=%s, dates=%s to %s, opponent='%s', minSupport=%d}",
+                playerName, side, startDate, endDate, opponent, minSupport);
     }
 }
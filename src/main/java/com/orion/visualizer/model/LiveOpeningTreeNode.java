@@ -0,0 +1,178 @@
+package com.orion.visualizer.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opening tree node that one thread can keep adding games to while others
+ * read it, for trees that follow a growing PGN file.
+ *
+ * Children live in a concurrent map and the statistics in LongAdders, so
+ * neither side locks. A reader may see a game counted at one node but not yet
+ * at the next one down its line; the counts settle as soon as the game has
+ * been added. Live trees only grow: they are never frozen, copied or merged.
+ */
+public class LiveOpeningTreeNode implements OpeningNode {
+    private final String fen;
+    private final String move;
+    private final int moveNumber;
+    private final LiveOpeningTreeNode parent;
+    private final Map<String, LiveOpeningTreeNode> children = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<GameReference> games = new ConcurrentLinkedQueue<>();
+    private final LongAdder gameCount = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+    private final LongAdder draws = new LongAdder();
+    private final LongAdder losses = new LongAdder();
+
+    /**
+     * Constructor for root node.
+     */
+    public LiveOpeningTreeNode(String fen) {
+        this(fen, null, 0, null);
+    }
+
+    private LiveOpeningTreeNode(String fen, String move, int moveNumber, LiveOpeningTreeNode parent) {
+        this.fen = fen;
+        this.move = move;
+        this.moveNumber = moveNumber;
+        this.parent = parent;
+    }
+
+    /**
+     * Add a game to this node and update statistics.
+     */
+    public void addGame(GameReference game) {
+        games.add(game);
+        gameCount.increment();
+        
+        if (game.isWin()) {
+            wins.increment();
+        } else if (game.isDraw()) {
+            draws.increment();
+        } else if (game.isLoss()) {
+            losses.increment();
+        }
+    }
+
+    /**
+     * Count a game without keeping a reference to it.
+     */
+    public void addResult(PlayerSide side, String result) {
+        gameCount.increment();
+        
+        if (side.isWin(result)) {
+            wins.increment();
+        } else if (side.isDraw(result)) {
+            draws.increment();
+        } else if (side.isLoss(result)) {
+            losses.increment();
+        }
+    }
+
+    /**
+     * Get or create a child node for a given move.
+     */
+    public LiveOpeningTreeNode getOrCreateChild(String move, String fen, int moveNumber) {
+        return children.computeIfAbsent(move,
+            m -> new LiveOpeningTreeNode(fen, m, moveNumber, this));
+    }
+
+    @Override
+    public String getFen() {
+        return fen;
+    }
+
+    @Override
+    public String getMove() {
+        return move;
+    }
+
+    @Override
+    public int getMoveNumber() {
+        return moveNumber;
+    }
+
+    @Override
+    public LiveOpeningTreeNode getParent() {
+        return parent;
+    }
+
+    @Override
+    public LiveOpeningTreeNode getChild(String move) {
+        return children.get(move);
+    }
+
+    /**
+     * Get all children sorted by game count (descending). Counts are read once
+     * before sorting, since games may be added meanwhile.
+     */
+    @Override
+    public List<LiveOpeningTreeNode> getChildrenSorted() {
+        List<LiveOpeningTreeNode> snapshot = new ArrayList<>(children.values());
+        long[] keys = new long[snapshot.size()];
+        for (int i = 0; i < keys.length; i++) {
+            // Count in the high bits, position in the low bits
+            keys[i] = ((long) snapshot.get(i).getGameCount() << 32) | i;
+        }
+        Arrays.sort(keys);
+        
+        List<LiveOpeningTreeNode> sortedChildren = new ArrayList<>(keys.length);
+        for (int i = keys.length - 1; i >= 0; i--) {
+            sortedChildren.add(snapshot.get((int) keys[i]));
+        }
+        return sortedChildren;
+    }
+
+    @Override
+    public Map<String, LiveOpeningTreeNode> getChildren() {
+        return Collections.unmodifiableMap(children);
+    }
+
+    /**
+     * Get a copy of the games added so far.
+     */
+    @Override
+    public List<GameReference> getGames() {
+        return List.copyOf(games);
+    }
+
+    @Override
+    public int getGameCount() {
+        return gameCount.intValue();
+    }
+
+    @Override
+    public int getWins() {
+        return wins.intValue();
+    }
+
+    @Override
+    public int getDraws() {
+        return draws.intValue();
+    }
+
+    @Override
+    public int getLosses() {
+        return losses.intValue();
+    }
+
+    @Override
+    public int countNodes() {
+        int count = 1;
+        for (LiveOpeningTreeNode child : children.values()) {
+            count += child.countNodes();
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return getDisplayString();
+    }
+}
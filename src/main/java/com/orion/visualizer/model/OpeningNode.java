@@ -0,0 +1,120 @@
+package com.orion.visualizer.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only view of a node in an opening tree: a position reached after a
+ * sequence of moves, with the games that reached it.
+ *
+ * Implemented by the frozen trees of OpeningTreeNode and the live trees of
+ * LiveOpeningTreeNode; views and statistics only need this interface.
+ */
+public interface OpeningNode {
+
+    /**
+     * Get the FEN of this position, or null if it was not recorded.
+     */
+    String getFen();
+
+    /**
+     * Get the move in SAN notation that led to this position, or null for the root.
+     */
+    String getMove();
+
+    int getMoveNumber();
+
+    /**
+     * Get the parent node, or null for the root.
+     */
+    OpeningNode getParent();
+
+    /**
+     * Get child node for a specific move.
+     */
+    OpeningNode getChild(String move);
+
+    /**
+     * Get the children by move.
+     */
+    Map<String, ? extends OpeningNode> getChildren();
+
+    /**
+     * Get all children sorted by game count (descending).
+     */
+    List<? extends OpeningNode> getChildrenSorted();
+
+    List<GameReference> getGames();
+
+    int getGameCount();
+
+    int getWins();
+
+    int getDraws();
+
+    int getLosses();
+
+    /**
+     * Count this node and all nodes below it, one per ply.
+     */
+    int countNodes();
+
+    /**
+     * Get win percentage.
+     */
+    default double getWinPercentage() {
+        int total = getGameCount();
+        return total > 0 ? (getWins() * 100.0 / total) : 0.0;
+    }
+
+    /**
+     * Get draw percentage.
+     */
+    default double getDrawPercentage() {
+        int total = getGameCount();
+        return total > 0 ? (getDraws() * 100.0 / total) : 0.0;
+    }
+
+    /**
+     * Get loss percentage.
+     */
+    default double getLossPercentage() {
+        int total = getGameCount();
+        return total > 0 ? (getLosses() * 100.0 / total) : 0.0;
+    }
+
+    /**
+     * Get the path from root to this node as a list of moves.
+     */
+    default List<String> getMovePath() {
+        List<String> path = new ArrayList<>();
+        for (OpeningNode current = this; current.getParent() != null; current = current.getParent()) {
+            path.add(current.getMove());
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Get a display string for this node showing move and statistics.
+     */
+    default String getDisplayString() {
+        if (getMove() == null) {
+            return "Start Position";
+        }
+        return String.format("%s (N=%d, W:%.1f%% D:%.1f%% L:%.1f%%)",
+                getMove(), getGameCount(), getWinPercentage(), getDrawPercentage(), getLossPercentage());
+    }
+
+    /**
+     * Get a compact display string for tree view.
+     */
+    default String getCompactDisplayString() {
+        if (getMove() == null) {
+            return String.format("Start (N=%d)", getGameCount());
+        }
+        return String.format("%s (N=%d, %.0f%%)", getMove(), getGameCount(), getWinPercentage());
+    }
+}
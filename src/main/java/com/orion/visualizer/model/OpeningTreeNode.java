@@ -5,20 +5,53 @@ import java.util.*;
 /**
  * Represents a node in the opening tree.
  * Each node corresponds to a position reached after a sequence of moves.
+ *
+ * Games are either added with a reference (player trees, listed in the game
+ * list) or only counted with addResult (database-wide explorer trees, which
+ * would not fit in memory with a reference per game and node).
+ *
+ * A tree is built by one thread and then frozen: after freeze() the whole
+ * tree is read-only and can be shared between threads without locks. To
+ * change a frozen tree, change a mutableCopy() and freeze that. The copy
+ * shares the frozen tree's nodes: a mutator copies each frozen node it
+ * reaches, so only the paths to the changed nodes are copied. A shared
+ * node's parent stays the original tree's node for the same moves, which
+ * getMovePath() walks just as well. Trees that grow while they are
+ * displayed use LiveOpeningTreeNode instead.
+ *
+ * Freezing compresses chains of single-child nodes with the same games (most
+ * of a tree's deep plies) into a segment: the chain's last node keeps the
+ * earlier plies' moves in arrays, and the other nodes are dropped. getChild,
+ * getChildren and getParent still step one ply at a time; the nodes of a
+ * segment's earlier plies are created when navigation first reaches them.
+ * Mutable trees are never compressed; copying a segment's node expands the
+ * segment into a node per ply.
  */
-public class OpeningTreeNode {
+public class OpeningTreeNode implements OpeningNode {
     private final String fen;
     private final String move; // Move in SAN notation that led to this position
     private final int moveNumber;
-    private final OpeningTreeNode parent;
+    // Not final: compression re-attaches a chain's last node to the chain's parent
+    private OpeningTreeNode parent;
     
     private final Map<String, OpeningTreeNode> children;
     private final List<GameReference> games;
     
     // Statistics
+    private int gameCount;
     private int wins;
     private int draws;
     private int losses;
+    private boolean frozen;
+    
+    // Segment: moves, FENs and move numbers of the compressed plies above this node
+    private String[] segmentMoves;
+    private String[] segmentFens;
+    private int[] segmentMoveNumbers;
+    // Nodes for those plies, created on first navigation
+    private OpeningTreeNode[] segmentPlies;
+    // Whether this node is one of those created plies; its child is not re-expanded
+    private final boolean segmentPly;
 
     /**
      * Constructor for root node.
@@ -40,13 +73,35 @@ public class OpeningTreeNode {
         this.wins = 0;
         this.draws = 0;
         this.losses = 0;
+        this.segmentPly = false;
+    }
+
+    /**
+     * Constructor for a ply of a segment, sharing the segment's games.
+     */
+    private OpeningTreeNode(OpeningTreeNode segment, String fen, String move, int moveNumber,
+                            OpeningTreeNode parent) {
+        this.fen = fen;
+        this.move = move;
+        this.moveNumber = moveNumber;
+        this.parent = parent;
+        this.children = new LinkedHashMap<>(2);
+        this.games = segment.games;
+        this.gameCount = segment.gameCount;
+        this.wins = segment.wins;
+        this.draws = segment.draws;
+        this.losses = segment.losses;
+        this.frozen = true;
+        this.segmentPly = true;
     }
 
     /**
      * Add a game to this node and update statistics.
      */
     public void addGame(GameReference game) {
+        checkMutable();
         games.add(game);
+        gameCount++;
         
         if (game.isWin()) {
             wins++;
@@ -57,30 +112,311 @@ public class OpeningTreeNode {
         }
     }
 
+    /**
+     * Count a game without keeping a reference to it.
+     *
+     * @param side Side whose point of view the statistics take
+     * @param result PGN result of the game
+     */
+    public void addResult(PlayerSide side, String result) {
+        checkMutable();
+        gameCount++;
+        
+        if (side.isWin(result)) {
+            wins++;
+        } else if (side.isDraw(result)) {
+            draws++;
+        } else if (side.isLoss(result)) {
+            losses++;
+        }
+    }
+
     /**
      * Get or create a child node for a given move.
      */
     public OpeningTreeNode getOrCreateChild(String move, String fen, int moveNumber) {
-        return children.computeIfAbsent(move, 
-            m -> new OpeningTreeNode(fen, m, moveNumber, this));
+        checkMutable();
+        OpeningTreeNode child = mutableChild(move);
+        if (child == null) {
+            child = new OpeningTreeNode(fen, move, moveNumber, this);
+            children.put(move, child);
+        }
+        return child;
+    }
+
+    /**
+     * Add the games of another tree built from the same start position,
+     * creating the nodes this tree does not have yet.
+     *
+     * @return Number of nodes created
+     */
+    public int merge(OpeningTreeNode other) {
+        checkMutable();
+        games.addAll(other.games);
+        gameCount += other.gameCount;
+        wins += other.wins;
+        draws += other.draws;
+        losses += other.losses;
+        int created = 0;
+        for (OpeningTreeNode otherChild : other.getChildren().values()) {
+            OpeningTreeNode child = mutableChild(otherChild.move);
+            if (child == null) {
+                child = getOrCreateChild(otherChild.move, otherChild.fen, otherChild.moveNumber);
+                created++;
+            }
+            created += child.merge(otherChild);
+        }
+        return created;
+    }
+
+    /**
+     * Remove the lines below this node played in fewer than minGames games.
+     */
+    public void prune(int minGames) {
+        checkMutable();
+        children.values().removeIf(child -> child.gameCount < minGames);
+        for (String childMove : new ArrayList<>(children.keySet())) {
+            mutableChild(childMove).prune(minGames);
+        }
+    }
+
+    /**
+     * Remove every node more than depth moves below this node.
+     *
+     * @return Number of nodes removed
+     */
+    public int truncate(int depth) {
+        checkMutable();
+        int removed = 0;
+        if (depth <= 0) {
+            for (OpeningTreeNode child : children.values()) {
+                removed += child.countNodes() + child.segmentLength();
+            }
+            children.clear();
+            return removed;
+        }
+        for (String childMove : new ArrayList<>(children.keySet())) {
+            removed += mutableChild(childMove).truncate(depth - 1);
+        }
+        return removed;
+    }
+
+    /**
+     * Make this node and every node below it read-only, releasing the spare
+     * capacity of their game lists and compressing single-child chains.
+     */
+    public void freeze() {
+        if (frozen) {
+            return;
+        }
+        frozen = true;
+        ((ArrayList<GameReference>) games).trimToSize();
+        compressChildren();
+        for (OpeningTreeNode child : children.values()) {
+            child.freeze();
+        }
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Replace each chain of single-child nodes with the same statistics that
+     * starts at a child by the chain's last node, holding the earlier plies as
+     * a segment. The child's key (the chain's first move) is kept.
+     */
+    private void compressChildren() {
+        for (Map.Entry<String, OpeningTreeNode> entry : children.entrySet()) {
+            OpeningTreeNode first = entry.getValue();
+            OpeningTreeNode last = first;
+            int length = 0;
+            // Frozen subtrees may be shared with a published tree and are left as they are
+            while (!last.frozen && last.children.size() == 1) {
+                OpeningTreeNode next = last.children.values().iterator().next();
+                if (next.frozen || !next.hasSameStatistics(last)) {
+                    break;
+                }
+                last = next;
+                length++;
+            }
+            if (length == 0) {
+                continue;
+            }
+            
+            String[] moves = new String[length];
+            String[] fens = new String[length];
+            int[] moveNumbers = new int[length];
+            OpeningTreeNode ply = first;
+            for (int i = 0; i < length; i++) {
+                moves[i] = ply.move;
+                fens[i] = ply.fen;
+                moveNumbers[i] = ply.moveNumber;
+                ply = ply.children.values().iterator().next();
+            }
+            last.segmentMoves = moves;
+            last.segmentFens = fens;
+            last.segmentMoveNumbers = moveNumbers;
+            last.parent = this;
+            entry.setValue(last);
+        }
+    }
+
+    private boolean hasSameStatistics(OpeningTreeNode other) {
+        return gameCount == other.gameCount && wins == other.wins && draws == other.draws
+            && losses == other.losses && games.size() == other.games.size();
+    }
+
+    private int segmentLength() {
+        return segmentMoves != null ? segmentMoves.length : 0;
+    }
+
+    /**
+     * Get the nodes of a segment's earlier plies, creating them on first use.
+     * The last one's only child is this node.
+     */
+    private synchronized OpeningTreeNode[] segmentPlies() {
+        if (segmentPlies == null) {
+            OpeningTreeNode[] plies = new OpeningTreeNode[segmentMoves.length];
+            OpeningTreeNode plyParent = parent;
+            for (int i = 0; i < plies.length; i++) {
+                plies[i] = new OpeningTreeNode(this, segmentFens[i], segmentMoves[i], segmentMoveNumbers[i],
+                    plyParent);
+                if (i > 0) {
+                    plies[i - 1].children.put(segmentMoves[i], plies[i]);
+                }
+                plyParent = plies[i];
+            }
+            plies[plies.length - 1].children.put(move, this);
+            segmentPlies = plies;
+        }
+        return segmentPlies;
+    }
+
+    /**
+     * Get the node standing for the first ply of a stored child: the child
+     * itself, or the first ply of its segment.
+     */
+    private OpeningTreeNode entryOf(OpeningTreeNode child) {
+        if (segmentPly || child.segmentMoves == null) {
+            return child;
+        }
+        return child.segmentPlies()[0];
+    }
+
+    /**
+     * Copy the tree below this node into a new, mutable tree rooted at this
+     * position. Game references are shared. The copy of a frozen tree shares
+     * its nodes until a mutator reaches them.
+     */
+    public OpeningTreeNode mutableCopy() {
+        return frozen ? thaw(null) : copy(null);
+    }
+
+    /**
+     * Get the stored child for a move, first replacing it by a mutable copy
+     * if it is frozen.
+     */
+    private OpeningTreeNode mutableChild(String childMove) {
+        OpeningTreeNode child = children.get(childMove);
+        if (child != null && child.frozen) {
+            child = child.thaw(this);
+            children.put(childMove, child);
+        }
+        return child;
+    }
+
+    /**
+     * Copy this frozen node, one mutable node per ply of its segment, keeping
+     * its children shared.
+     *
+     * @return The node for the first ply
+     */
+    private OpeningTreeNode thaw(OpeningTreeNode newParent) {
+        OpeningTreeNode first = null;
+        OpeningTreeNode plyParent = newParent;
+        for (int i = 0; i < segmentLength(); i++) {
+            OpeningTreeNode ply = new OpeningTreeNode(segmentFens[i], segmentMoves[i], segmentMoveNumbers[i],
+                plyParent);
+            ply.copyStatistics(this);
+            if (first == null) {
+                first = ply;
+            } else {
+                plyParent.children.put(ply.move, ply);
+            }
+            plyParent = ply;
+        }
+        OpeningTreeNode copy = new OpeningTreeNode(fen, move, moveNumber, plyParent);
+        copy.copyStatistics(this);
+        copy.children.putAll(children);
+        if (first == null) {
+            return copy;
+        }
+        plyParent.children.put(move, copy);
+        return first;
+    }
+
+    private void copyStatistics(OpeningTreeNode node) {
+        games.addAll(node.games);
+        gameCount = node.gameCount;
+        wins = node.wins;
+        draws = node.draws;
+        losses = node.losses;
+    }
+
+    private OpeningTreeNode copy(OpeningTreeNode newParent) {
+        OpeningTreeNode copy = new OpeningTreeNode(fen, move, moveNumber, newParent);
+        copy.copyStatistics(this);
+        // Segments are expanded: the copy may gain games that diverge mid-chain
+        for (OpeningTreeNode child : getChildren().values()) {
+            copy.children.put(child.move, child.copy(copy));
+        }
+        return copy;
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            throw new IllegalStateException("Opening tree is frozen");
+        }
+    }
+
+    /**
+     * Count this node and all nodes below it, one per ply, without expanding
+     * segments.
+     */
+    public int countNodes() {
+        int count = 1;
+        for (OpeningTreeNode child : children.values()) {
+            // A segment's earlier plies are already counted when reached through them
+            count += child.countNodes() + (segmentPly ? 0 : child.segmentLength());
+        }
+        return count;
     }
 
     /**
      * Get child node for a specific move.
      */
     public OpeningTreeNode getChild(String move) {
-        return children.get(move);
+        OpeningTreeNode child = children.get(move);
+        return child != null ? entryOf(child) : null;
     }
 
     /**
      * Get all children sorted by game count (descending).
      */
     public List<OpeningTreeNode> getChildrenSorted() {
-        List<OpeningTreeNode> sortedChildren = new ArrayList<>(children.values());
+        List<OpeningTreeNode> sortedChildren = new ArrayList<>(children.size());
+        for (OpeningTreeNode child : children.values()) {
+            sortedChildren.add(entryOf(child));
+        }
         sortedChildren.sort((a, b) -> Integer.compare(b.getGameCount(), a.getGameCount()));
         return sortedChildren;
     }
 
+    /**
+     * Get the FEN of this position, or null for nodes built from the ply index
+     * without replaying moves; replay getMovePath() to get the position then.
+     */
     public String getFen() {
         return fen;
     }
@@ -94,11 +430,56 @@ public class OpeningTreeNode {
     }
 
     public OpeningTreeNode getParent() {
-        return parent;
+        return segmentMoves != null ? segmentPlies()[segmentMoves.length - 1] : parent;
     }
 
+    /**
+     * Get the children by move. Segment plies are only created for the
+     * children actually read from the map.
+     */
     public Map<String, OpeningTreeNode> getChildren() {
-        return Collections.unmodifiableMap(children);
+        if (segmentPly) {
+            return Collections.unmodifiableMap(children);
+        }
+        return new AbstractMap<>() {
+            @Override
+            public Set<Map.Entry<String, OpeningTreeNode>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Map.Entry<String, OpeningTreeNode>> iterator() {
+                        Iterator<Map.Entry<String, OpeningTreeNode>> stored = children.entrySet().iterator();
+                        return new Iterator<>() {
+                            @Override
+                            public boolean hasNext() {
+                                return stored.hasNext();
+                            }
+
+                            @Override
+                            public Map.Entry<String, OpeningTreeNode> next() {
+                                Map.Entry<String, OpeningTreeNode> entry = stored.next();
+                                return Map.entry(entry.getKey(), entryOf(entry.getValue()));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return children.size();
+                    }
+                };
+            }
+
+            @Override
+            public OpeningTreeNode get(Object key) {
+                OpeningTreeNode child = children.get(key);
+                return child != null ? entryOf(child) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return children.containsKey(key);
+            }
+        };
     }
 
     public List<GameReference> getGames() {
@@ -106,7 +487,7 @@ public class OpeningTreeNode {
     }
 
     public int getGameCount() {
-        return games.size();
+        return gameCount;
     }
 
     public int getWins() {
@@ -122,63 +503,24 @@ public class OpeningTreeNode {
     }
 
     /**
-     * Get win percentage.
-     */
-    public double getWinPercentage() {
-        int total = getGameCount();
-        return total > 0 ? (wins * 100.0 / total) : 0.0;
-    }
-
-    /**
-     * Get draw percentage.
-     */
-    public double getDrawPercentage() {
-        int total = getGameCount();
-        return total > 0 ? (draws * 100.0 / total) : 0.0;
-    }
-
-    /**
-     * Get loss percentage.
-     */
-    public double getLossPercentage() {
-        int total = getGameCount();
-        return total > 0 ? (losses * 100.0 / total) : 0.0;
-    }
-
-    /**
-     * Get the path from root to this node as a list of moves.
+     * Get the path from root to this node as a list of moves, including the
+     * plies of segments.
      */
+    @Override
     public List<String> getMovePath() {
         List<String> path = new ArrayList<>();
         OpeningTreeNode current = this;
         while (current.parent != null) {
-            path.add(0, current.move);
+            path.add(current.move);
+            for (int i = current.segmentLength() - 1; i >= 0; i--) {
+                path.add(current.segmentMoves[i]);
+            }
             current = current.parent;
         }
+        Collections.reverse(path);
         return path;
     }
 
-    /**
-     * Get a display string for this node showing move and statistics.
-     */
-    public String getDisplayString() {
-        if (move == null) {
-            return "Start Position";
-        }
-        return String.format("%s (N=%d, W:%.1f%% D:%.1f%% L:%.1f%%)",
-                move, getGameCount(), getWinPercentage(), getDrawPercentage(), getLossPercentage());
-    }
-
-    /**
-     * Get a compact display string for tree view.
-     */
-    public String getCompactDisplayString() {
-        if (move == null) {
-            return String.format("Start (N=%d)", getGameCount());
-        }
-        return String.format("%s (N=%d, %.0f%%)", move, getGameCount(), getWinPercentage());
-    }
-
     @Override
     public String toString() {
         return getDisplayString();
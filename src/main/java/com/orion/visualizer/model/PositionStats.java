@@ -0,0 +1,88 @@
+package com.orion.visualizer.model;
+
+import java.util.List;
+
+/**
+ * Statistics of a position from the position index: the moves played from it
+ * with their results, and the ids of the games that reached it.
+ */
+public class PositionStats {
+    private final long positionHash;
+    private final List<MoveStats> moves;
+    private final int[] gameIds;
+
+    public PositionStats(long positionHash, List<MoveStats> moves, int[] gameIds) {
+        this.positionHash = positionHash;
+        this.moves = moves;
+        this.gameIds = gameIds;
+    }
+
+    public long getPositionHash() {
+        return positionHash;
+    }
+
+    /**
+     * Get the next moves, most played first.
+     */
+    public List<MoveStats> getMoves() {
+        return moves;
+    }
+
+    /**
+     * Get the database-wide ids of the games reaching this position, in ascending order.
+     */
+    public int[] getGameIds() {
+        return gameIds;
+    }
+
+    public int getGameCount() {
+        return gameIds.length;
+    }
+
+    /**
+     * Results of one move from the position, from White's point of view.
+     */
+    public static class MoveStats {
+        private final String move;
+        private final int whiteWins;
+        private final int draws;
+        private final int blackWins;
+
+        public MoveStats(String move, int whiteWins, int draws, int blackWins) {
+            this.move = move;
+            this.whiteWins = whiteWins;
+            this.draws = draws;
+            this.blackWins = blackWins;
+        }
+
+        public String getMove() {
+            return move;
+        }
+
+        public int getWhiteWins() {
+            return whiteWins;
+        }
+
+        public int getDraws() {
+            return draws;
+        }
+
+        public int getBlackWins() {
+            return blackWins;
+        }
+
+        /**
+         * Number of finished games with this move.
+         */
+        public int getTotal() {
+            return whiteWins + draws + blackWins;
+        }
+
+        @Override
+        public String toString() {
+            int total = Math.max(1, getTotal());
+            return String.format("%s %d (W %.0f%% D %.0f%% B %.0f%%)", move, getTotal(),
+                100.0 * whiteWins / total, 100.0 * draws / total, 100.0 * blackWins / total);
+        }
+    }
+}
@@ -6,19 +6,60 @@ import com.orion.visualizer.model.*;
 import com.orion.visualizer.util.ChessNotation;
 import com.orion.visualizer.util.DateUtils;
 
+import java.io.IOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * Service for analyzing chess games and building opening repertoire trees.
+ *
+ * Trees are built privately, frozen, and then published as the current tree
+ * through a single atomic reference, so readers always see a complete,
+ * unchanging version without locking. Updates (appended games, deepened
+ * lines) copy the current tree, change the copy and publish it in turn, as
+ * long as no new tree was built meanwhile. Each tree records the shards its
+ * games came from, so a shard appended while a tree is being built is merged
+ * into it once it is published.
+ *
+ * Builds read the database in batches, each under its own read lock hold,
+ * and call their checkpoint only between batches, so a throttled or paused
+ * build never keeps a load or append waiting. A build stops with a
+ * CancellationException if the database is loaded or closed meanwhile.
  */
 public class AnalysisService {
-    private static final int MAX_OPENING_DEPTH = 20; // Analyze first 20 moves
+    public static final int MAX_OPENING_DEPTH = 20; // Analyze first 20 moves
+    private static final int EXPLORER_CHUNK_GAMES = 10_000;
+    // Games replayed per read lock hold; checkpoints run between holds
+    private static final int BUILD_BATCH_GAMES = 1_000;
+    private static final int EXPLORER_MAX_NODES = 2_000_000;
+    public static final int DEFAULT_PREVIEW_SAMPLE = 20_000;
     
     private final DatabaseService databaseService;
-    private OpeningTreeNode currentTree;
-    private FilterCriteria currentFilters;
+    private final AtomicReference<TreeSnapshot> currentTree = new AtomicReference<>();
+    private volatile FilterCriteria currentFilters;
+    // Latest database-wide explorer tree, kept as the reference for player trees
+    private volatile OpeningTreeNode baselineTree;
 
     public AnalysisService(DatabaseService databaseService) {
         this.databaseService = databaseService;
@@ -42,45 +83,576 @@ public class AnalysisService {
      * Build opening tree synchronously.
      */
     public OpeningTreeNode buildTree(FilterCriteria filters) throws Exception {
+        return buildTree(filters, () -> { });
+    }
+
+    /**
+     * Build opening tree synchronously, calling checkpoint between games so
+     * that the caller can throttle, pause or cancel the build.
+     */
+    public OpeningTreeNode buildTree(FilterCriteria filters, Runnable checkpoint) throws Exception {
         this.currentFilters = filters;
+
+        int generation = databaseService.getLoadGeneration();
+        int shardCount = databaseService.getShardCount();
+        OpeningTreeNode root;
+        ExplorerTree explorer = null;
+        if (filters.isExplorer()) {
+            explorer = buildExplorerTree(filters, 0, shardCount, MAX_OPENING_DEPTH, generation, checkpoint);
+            root = publishedExplorerTree(explorer.tree, filters);
+        } else {
+            root = replayGames(filters, -1, shardCount, generation, checkpoint);
+        }
+        BitSet shards = new BitSet();
+        shards.set(0, shardCount);
+        ExplorerTree built = explorer;
+        currentTree.updateAndGet(previous -> new TreeSnapshot(
+            root, previous != null ? previous.build + 1 : 1, filters, built, generation, shards));
         
-        // Get games based on filters
-        List<Game> games = getFilteredGames(filters);
-        
-        // Build tree from games
+        // Add the shards appended during the build; their refreshes may have found the previous tree
+        OpeningTreeNode latest = root;
+        for (int shard = shardCount; shard < databaseService.getShardCount(); shard++) {
+            OpeningTreeNode merged = addAppendedShard(shard);
+            if (merged != null) {
+                latest = merged;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Publish an empty tree, e.g. for a newly opened database. Nothing is
+     * replayed: explorer trees read every game, so they are only built when
+     * asked for. Appended games are not added to the empty tree.
+     */
+    public OpeningTreeNode clearTree() {
+        this.currentFilters = new FilterCriteria();
+
         OpeningTreeNode root = new OpeningTreeNode(ChessNotation.getStartingFen());
+        root.freeze();
+        int generation = databaseService.getLoadGeneration();
+        currentTree.updateAndGet(previous -> new TreeSnapshot(
+            root, previous != null ? previous.build + 1 : 1, null, null, generation, new BitSet()));
+        return root;
+    }
+
+    /**
+     * Build an approximate tree from a uniform random sample of the candidate
+     * games, for a quick look while the exact tree is built. Every candidate
+     * is equally likely to be sampled, so the share of each line and its
+     * W/D/L rates are unbiased estimates. The current tree is left unchanged.
+     * Explorer queries take every game as a candidate, so they sample game ids
+     * and read only the sampled games.
+     *
+     * @param sampleSize Number of candidate games to sample
+     */
+    public TreePreview buildPreviewTree(FilterCriteria filters, int sampleSize) throws Exception {
+        long startTime = System.currentTimeMillis();
+
+        return databaseService.withReadLock(() -> {
+            OpeningTreeNode root = new OpeningTreeNode(ChessNotation.getStartingFen());
+            ShardedPlyIndex plyIndex = databaseService.getPlyIndex();
+            
+            if (filters.isExplorer()) {
+                // Every game is a candidate: sample ids instead of reading the whole database.
+                // A shard's ids run from its id base to the base plus its game count
+                int shardCount = databaseService.getShardCount();
+                int[] slotBases = new int[shardCount + 1];
+                for (int shard = 0; shard < shardCount; shard++) {
+                    slotBases[shard + 1] = slotBases[shard] + databaseService.getShardGameCount(shard) + 1;
+                }
+                int sampled = 0;
+                int shard = 0;
+                for (int slot : sampleIndices(slotBases[shardCount], sampleSize, ThreadLocalRandom.current())) {
+                    while (slot >= slotBases[shard + 1]) {
+                        shard++;
+                    }
+                    int gameId = databaseService.getShardIdBase(shard) + slot - slotBases[shard];
+                    Game game = databaseService.getGameById(gameId);
+                    if (game == null) {
+                        continue;
+                    }
+                    sampled++;
+                    addSampledGame(root, game, gameId, filters, plyIndex);
+                }
+                root.freeze();
+                return new TreePreview(root, sampled, databaseService.getGameCount(),
+                    System.currentTimeMillis() - startTime);
+            }
+            
+            List<Game> games = getCandidateGames(filters, -1);
+            int[] sample = sampleIndices(games.size(), sampleSize, ThreadLocalRandom.current());
+            for (int index : sample) {
+                addSampledGame(root, games.get(index), databaseService.resolveGameId(games, index), filters,
+                    plyIndex);
+            }
+            root.freeze();
+            return new TreePreview(root, sample.length, games.size(), System.currentTimeMillis() - startTime);
+        });
+    }
+
+    /**
+     * Add a sampled game to a preview tree if it matches the filters.
+     */
+    private void addSampledGame(OpeningTreeNode root, Game game, int gameId, FilterCriteria filters,
+                                ShardedPlyIndex plyIndex) {
+        if (!matchesFilters(game, filters)) {
+            return;
+        }
+        if (filters.isExplorer()) {
+            String result = game.getResult();
+            readOpening(game, gameId, plyIndex, MAX_OPENING_DEPTH, false)
+                .addTo(root, 0, node -> node.addResult(PlayerSide.WHITE, result));
+        } else {
+            processGame(game, gameId, root, filters, plyIndex, null);
+        }
+    }
+
+    /**
+     * Pick k distinct indices in [0, n) uniformly (Floyd's algorithm), in
+     * ascending order so that shards are read in sequence.
+     */
+    private static int[] sampleIndices(int n, int k, Random random) {
+        if (k >= n) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        Set<Integer> chosen = new HashSet<>(k * 2);
+        for (int j = n - k; j < n; j++) {
+            int candidate = random.nextInt(j + 1);
+            chosen.add(chosen.contains(candidate) ? j : candidate);
+        }
+        int[] indices = chosen.stream().mapToInt(Integer::intValue).toArray();
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    /**
+     * Build several trees asynchronously with one pass over their games.
+     */
+    public CompletableFuture<List<OpeningTreeNode>> buildTreesAsync(List<FilterCriteria> queries) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return buildTrees(queries, () -> { });
+            } catch (Exception e) {
+                throw new RuntimeException("Error building trees: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Build one tree per filter set, reading and replaying each candidate game
+     * once and adding it to every tree whose filters it matches, so the cost
+     * is close to a single build. The current tree is left unchanged.
+     *
+     * Explorer queries (no player) count the whole database into their own
+     * kind of tree and are built separately.
+     *
+     * @return The trees, in the order of the queries
+     */
+    public List<OpeningTreeNode> buildTrees(List<FilterCriteria> queries, Runnable checkpoint) throws Exception {
+        int generation = databaseService.getLoadGeneration();
+        int shardCount = databaseService.getShardCount();
+        OpeningTreeNode[] trees = new OpeningTreeNode[queries.size()];
+        for (int q = 0; q < trees.length; q++) {
+            if (queries.get(q).isExplorer()) {
+                ExplorerTree explorer = buildExplorerTree(queries.get(q), 0, shardCount, MAX_OPENING_DEPTH,
+                    generation, checkpoint);
+                trees[q] = publishedExplorerTree(explorer.tree, queries.get(q));
+            } else {
+                trees[q] = new OpeningTreeNode(ChessNotation.getStartingFen());
+            }
+        }
+
+        // Route every candidate game to the queries it matches, by database-wide id
+        Map<Integer, Game> games = new TreeMap<>();
+        Map<Integer, BitSet> routes = new HashMap<>();
+        underReadLock(generation, () -> {
+            Map<String, List<Game>> searches = new HashMap<>();
+            for (int q = 0; q < trees.length; q++) {
+                FilterCriteria filters = queries.get(q);
+                if (filters.isExplorer()) {
+                    continue;
+                }
+                // Queries for the same player and side share one search
+                String search = filters.getPlayerName() + "|" + filters.getSide();
+                List<Game> candidates = searches.get(search);
+                if (candidates == null) {
+                    candidates = getCandidateGames(filters, -1);
+                    searches.put(search, candidates);
+                }
+                for (int i = 0; i < candidates.size(); i++) {
+                    Game game = candidates.get(i);
+                    if (matchesFilters(game, filters)) {
+                        int gameId = databaseService.resolveGameId(candidates, i);
+                        games.putIfAbsent(gameId, game);
+                        routes.computeIfAbsent(gameId, id -> new BitSet()).set(q);
+                    }
+                }
+            }
+            return null;
+        });
         
-        for (Game game : games) {
-            processGame(game, root, filters);
+        List<Map.Entry<Integer, Game>> routed = new ArrayList<>(games.entrySet());
+        for (int from = 0; from < routed.size(); from += BUILD_BATCH_GAMES) {
+            checkpoint.run();
+            List<Map.Entry<Integer, Game>> batch = routed.subList(from,
+                Math.min(routed.size(), from + BUILD_BATCH_GAMES));
+            underReadLock(generation, () -> {
+                ShardedPlyIndex plyIndex = databaseService.getPlyIndex();
+                for (Map.Entry<Integer, Game> entry : batch) {
+                    int gameId = entry.getKey();
+                    BitSet route = routes.get(gameId);
+                    OpeningLine line = null;
+                    for (int q = route.nextSetBit(0); q >= 0; q = route.nextSetBit(q + 1)) {
+                        line = processGame(entry.getValue(), gameId, trees[q], queries.get(q), plyIndex, line);
+                    }
+                }
+                return null;
+            });
+        }
+        for (OpeningTreeNode tree : trees) {
+            tree.freeze();
+        }
+        return Arrays.asList(trees);
+    }
+
+    /**
+     * Add the games of an appended shard to the current tree and publish the
+     * result, with the filters the current tree was built with. Only the new
+     * shard's games are replayed, into a tree that is merged into a copy of
+     * the current one. Nothing is added if the current tree already has the
+     * shard's games, e.g. because its build started after the append.
+     *
+     * Explorer trees are depth-limited and pruned over the whole database, so
+     * the shard's tree is merged into the unpruned tree kept with the
+     * snapshot instead, which is then limited to EXPLORER_MAX_NODES and
+     * pruned again like a new build.
+     *
+     * @return The new current tree, or null if nothing was added
+     */
+    public OpeningTreeNode addAppendedShard(int shard) throws Exception {
+        while (true) {
+            TreeSnapshot start = currentTree.get();
+            if (start == null || start.filters == null || start.shards.get(shard)
+                    || start.generation != databaseService.getLoadGeneration()) {
+                return null;
+            }
+            OpeningTreeNode appended = start.explorer != null
+                // Merged unpruned, at the depth the current tree was limited to
+                ? buildExplorerTree(start.filters, shard, shard + 1, start.explorer.depth, start.generation,
+                                    () -> { }).tree
+                : replayGames(start.filters, shard, 0, start.generation, () -> { });
+            
+            while (true) {
+                TreeSnapshot current = currentTree.get();
+                if (current == null || current.build != start.build) {
+                    // Rebuilt meanwhile, maybe with other filters; check the new tree
+                    break;
+                }
+                if (current.shards.get(shard)) {
+                    return null;
+                }
+                BitSet shards = (BitSet) current.shards.clone();
+                shards.set(shard);
+                OpeningTreeNode root;
+                ExplorerTree explorer = null;
+                if (current.explorer != null) {
+                    explorer = current.explorer.merge(appended);
+                    root = publishedExplorerTree(explorer.tree, current.filters);
+                } else {
+                    root = current.root.mutableCopy();
+                    root.merge(appended);
+                    root.freeze();
+                }
+                if (currentTree.compareAndSet(current, new TreeSnapshot(
+                        root, current.build, current.filters, explorer, current.generation, shards))) {
+                    return root;
+                }
+            }
         }
+    }
+
+    /**
+     * Extend a line of the current tree past the build depth by re-reading
+     * only the games stored at its last node. The result is a detached tree
+     * rooted at that node, to be added with spliceDeepenedLine.
+     *
+     * @param movePath Moves leading to the node
+     * @param games The node's games
+     * @param extraPlies Number of plies to add below the node
+     */
+    public OpeningTreeNode deepenLine(List<String> movePath, List<GameReference> games, int extraPlies)
+            throws Exception {
+        OpeningTreeNode subtree = new OpeningTreeNode(null);
+        int depth = movePath.size();
+
+        databaseService.withReadLock(() -> {
+            for (GameReference gameRef : games) {
+                Game game = databaseService.getGameById(gameRef.getGameId());
+                if (game == null) {
+                    continue;
+                }
+                // Stored plies stop at the build depth, so these games are replayed
+                OpeningLine line = readOpening(game, gameRef.getGameId(), null, depth + extraPlies, true);
+                if (line.startsWith(movePath)) {
+                    line.addTo(subtree, depth, node -> node.addGame(gameRef));
+                }
+            }
+            return null;
+        });
+        subtree.freeze();
+        return subtree;
+    }
+
+    /**
+     * Add a tree from deepenLine below the leaf it was built for, in a copy of
+     * the current tree, and publish the copy.
+     *
+     * @param build Build number of the current tree when the line was deepened
+     * @return The new current tree, or null if another tree was built meanwhile
+     *         or the line is no longer a leaf
+     */
+    public OpeningTreeNode spliceDeepenedLine(int build, List<String> movePath, OpeningTreeNode subtree) {
+        while (true) {
+            TreeSnapshot current = currentTree.get();
+            if (current == null || current.build != build) {
+                return null;
+            }
+            OpeningTreeNode leaf = current.root;
+            for (int i = 0; leaf != null && i < movePath.size(); i++) {
+                leaf = leaf.getChild(movePath.get(i));
+            }
+            if (leaf == null || !leaf.getChildren().isEmpty()) {
+                return null;
+            }
+            // Only the nodes on the line are copied; the rest of the tree is shared
+            OpeningTreeNode spliced = current.root.mutableCopy();
+            OpeningTreeNode copy = spliced;
+            for (String move : movePath) {
+                copy = copy.getOrCreateChild(move, null, 0);
+            }
+            // The subtree's root holds no games, so the leaf's own statistics are unchanged
+            copy.merge(subtree);
+            spliced.freeze();
+            if (currentTree.compareAndSet(current, current.withRoot(spliced))) {
+                return spliced;
+            }
+        }
+    }
+
+    /**
+     * Build a player tree from the games matching the filters.
+     *
+     * @param shard Shard to read, or -1 for the first shardCount shards
+     * @param generation Load generation of the database the tree is built from
+     */
+    private OpeningTreeNode replayGames(FilterCriteria filters, int shard, int shardCount, int generation,
+                                        Runnable checkpoint) throws Exception {
+        // Get candidate games; results are walked by index to keep their database-wide ids
+        int[] idLimit = {Integer.MAX_VALUE};
+        List<Game> games = underReadLock(generation, () -> {
+            if (shard < 0 && shardCount < databaseService.getShardCount()) {
+                // Shards appended since the build started are added by addAppendedShard
+                idLimit[0] = databaseService.getShardIdBase(shardCount);
+            }
+            return getCandidateGames(filters, shard);
+        });
         
-        this.currentTree = root;
+        // Build tree from games, walking stored plies where the ply index has them
+        OpeningTreeNode tree = new OpeningTreeNode(ChessNotation.getStartingFen());
+        for (int from = 0; from < games.size(); from += BUILD_BATCH_GAMES) {
+            checkpoint.run();
+            int batchFrom = from;
+            int batchTo = Math.min(games.size(), from + BUILD_BATCH_GAMES);
+            underReadLock(generation, () -> {
+                ShardedPlyIndex plyIndex = databaseService.getPlyIndex();
+                for (int i = batchFrom; i < batchTo; i++) {
+                    Game game = games.get(i);
+                    int gameId = databaseService.resolveGameId(games, i);
+                    if (gameId < idLimit[0] && matchesFilters(game, filters)) {
+                        processGame(game, gameId, tree, filters, plyIndex, null);
+                    }
+                }
+                return null;
+            });
+        }
+        tree.freeze();
+        return tree;
+    }
+
+    /**
+     * Build a database-wide tree without a player: every game is counted, with
+     * results from White's point of view, and no game references are kept.
+     *
+     * Shards are read one after another and cut into chunks that are replayed
+     * in parallel into their own trees; finished chunk trees are merged into
+     * the result right away, with a bounded number in flight. If the result
+     * grows beyond EXPLORER_MAX_NODES, its deepest level is dropped and later
+     * chunks stop there, so memory stays bounded while the counts of the
+     * remaining nodes stay exact. The result is not pruned; see
+     * publishedExplorerTree.
+     *
+     * @param firstShard First shard to read
+     * @param endShard Shard after the last one to read
+     * @param maxDepth Depth to start at
+     * @param generation Load generation of the database the tree is built from
+     */
+    private ExplorerTree buildExplorerTree(FilterCriteria filters, int firstShard, int endShard, int maxDepth,
+                                           int generation, Runnable checkpoint) throws Exception {
+        long startTime = System.currentTimeMillis();
+        int threads = Runtime.getRuntime().availableProcessors();
+        ShardedPlyIndex plyIndex = databaseService.getPlyIndex();
+        OpeningTreeNode tree = new OpeningTreeNode(ChessNotation.getStartingFen());
+        int[] nodeCount = {1};
+        int[] depth = {maxDepth};
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "explorer-build");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Each chunk is replayed under its own read lock hold; the checkpoint runs without it
+        try {
+            for (int current = firstShard; current < endShard; current++) {
+                int shardIndex = current;
+                List<Game> games = underReadLock(generation, () -> databaseService.getShardGames(shardIndex));
+                CompletionService<OpeningTreeNode> chunks = new ExecutorCompletionService<>(executor);
+                int next = 0;
+                int pending = 0;
+                
+                while (next < games.size() || pending > 0) {
+                    // At most two chunks per thread in flight, so unmerged trees stay few
+                    while (next < games.size() && pending < threads * 2) {
+                        int from = next;
+                        int to = Math.min(games.size(), from + EXPLORER_CHUNK_GAMES);
+                        int maxPlies = depth[0];
+                        chunks.submit(() -> underReadLock(generation,
+                            () -> buildExplorerChunk(games, from, to, filters, plyIndex, maxPlies)));
+                        next = to;
+                        pending++;
+                    }
+                    
+                    checkpoint.run();
+                    OpeningTreeNode chunk;
+                    try {
+                        chunk = chunks.take().get();
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof CancellationException) {
+                            throw (CancellationException) e.getCause();
+                        }
+                        throw e;
+                    }
+                    pending--;
+                    chunk.truncate(depth[0]);
+                    nodeCount[0] += tree.merge(chunk);
+                    while (nodeCount[0] > EXPLORER_MAX_NODES && depth[0] > 1) {
+                        depth[0]--;
+                        nodeCount[0] -= tree.truncate(depth[0]);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        tree.freeze();
+        MetricsService metrics = MetricsService.getInstance();
+        metrics.setGauge("explorer.buildMs", System.currentTimeMillis() - startTime);
+        metrics.setGauge("explorer.depth", depth[0]);
+        return new ExplorerTree(tree, depth[0], nodeCount[0]);
+    }
+
+    /**
+     * Get the tree to publish for an unpruned explorer tree: a copy without
+     * the lines below the filters' min-support, or the tree itself. It also
+     * becomes the baseline for player trees.
+     */
+    private OpeningTreeNode publishedExplorerTree(OpeningTreeNode unpruned, FilterCriteria filters) {
+        OpeningTreeNode tree = unpruned;
+        if (filters.getMinSupport() > 1) {
+            tree = unpruned.mutableCopy();
+            tree.prune(filters.getMinSupport());
+            tree.freeze();
+        }
+        baselineTree = tree;
+        return tree;
+    }
+
+    /**
+     * Run part of a build under the read lock.
+     *
+     * @param generation Load generation of the database when the build started
+     * @throws CancellationException if a database was loaded or closed since
+     */
+    private <T> T underReadLock(int generation, Callable<T> work) throws Exception {
+        return databaseService.withReadLock(() -> {
+            if (databaseService.getLoadGeneration() != generation) {
+                throw new CancellationException("Database was replaced during the build");
+            }
+            return work.call();
+        });
+    }
+
+    /**
+     * Count a range of games into a new tree, with White's results.
+     */
+    private OpeningTreeNode buildExplorerChunk(List<Game> games, int from, int to, FilterCriteria filters,
+                                               ShardedPlyIndex plyIndex, int maxPlies) {
+        OpeningTreeNode root = new OpeningTreeNode(ChessNotation.getStartingFen());
+        for (int i = from; i < to; i++) {
+            Game game = games.get(i);
+            if (matchesFilters(game, filters)) {
+                String result = game.getResult();
+                readOpening(game, databaseService.resolveGameId(games, i), plyIndex, maxPlies, false)
+                    .addTo(root, 0, node -> node.addResult(PlayerSide.WHITE, result));
+            }
+        }
         return root;
     }
 
     /**
-     * Get games filtered by criteria.
+     * Get the node of the latest database-wide explorer tree reached by a move
+     * path, to compare a player's results with the whole database.
+     *
+     * @return The node, or null if no explorer tree was built or the line is not in it
      */
-    private List<Game> getFilteredGames(FilterCriteria filters) throws Exception {
-        List<Game> games;
-        
+    public OpeningTreeNode getBaselineNode(List<String> movePath) {
+        OpeningTreeNode node = baselineTree;
+        for (int i = 0; node != null && i < movePath.size(); i++) {
+            node = node.getChild(movePath.get(i));
+        }
+        return node;
+    }
+
+    /**
+     * Get games matching the player and side criteria; the remaining criteria
+     * are checked per game with matchesFilters.
+     */
+    private List<Game> getCandidateGames(FilterCriteria filters, int shard) throws Exception {
+        if (shard >= 0) {
+            if (filters.getPlayerName() != null && !filters.getPlayerName().isEmpty()) {
+                return databaseService.searchShardByPlayer(shard, filters.getPlayerName());
+            }
+            return databaseService.getShardGames(shard);
+        }
+
         // Filter by player and side
         if (filters.getPlayerName() != null && !filters.getPlayerName().isEmpty()) {
             if (filters.getSide() == PlayerSide.WHITE) {
-                games = databaseService.searchByPlayerAndSide(filters.getPlayerName(), true);
+                return databaseService.searchByPlayerAndSide(filters.getPlayerName(), true);
             } else if (filters.getSide() == PlayerSide.BLACK) {
-                games = databaseService.searchByPlayerAndSide(filters.getPlayerName(), false);
+                return databaseService.searchByPlayerAndSide(filters.getPlayerName(), false);
             } else {
-                games = databaseService.searchByPlayer(filters.getPlayerName());
+                return databaseService.searchByPlayer(filters.getPlayerName());
             }
-        } else {
-            games = databaseService.getAllGames();
         }
-        
-        // Apply additional filters
-        return games.stream()
-            .filter(game -> matchesFilters(game, filters))
-            .toList();
+        return databaseService.getAllGames();
     }
 
     /**
@@ -92,7 +664,7 @@ public class AnalysisService {
         if (!filters.isDateInRange(gameDate)) {
             return false;
         }
-        
+
         // Opponent filter
         if (filters.getOpponent() != null && !filters.getOpponent().isEmpty()) {
             String opponent = getOpponent(game, filters);
@@ -100,7 +672,7 @@ public class AnalysisService {
                 return false;
             }
         }
-        
+
         return true;
     }
 
@@ -111,7 +683,7 @@ public class AnalysisService {
         if (filters.getPlayerName() == null) {
             return null;
         }
-        
+
         String playerName = filters.getPlayerName();
         if (game.getWhite().equalsIgnoreCase(playerName)) {
             return game.getBlack();
@@ -123,18 +695,23 @@ public class AnalysisService {
 
     /**
      * Process a single game and add it to the tree.
+     *
+     * @param plyIndex Ply index to read the game's moves from, or null to replay them
+     * @param line The game's opening if already read for another tree, or null
+     * @return The game's opening, to reuse for further trees; null if the game was skipped
      */
-    private void processGame(Game game, OpeningTreeNode root, FilterCriteria filters) {
+    private OpeningLine processGame(Game game, int gameId, OpeningTreeNode root, FilterCriteria filters,
+                                    ShardedPlyIndex plyIndex, OpeningLine line) {
         // Determine player side in this game
         PlayerSide playerSide = determinePlayerSide(game, filters);
         if (playerSide == PlayerSide.BOTH) {
-            return; // Skip if we can't determine side
+            return line; // Skip if we can't determine side
         }
-        
+
         // Create game reference
         LocalDate gameDate = DateUtils.parsePgnDate(game.getDate());
         GameReference gameRef = new GameReference(
-            game.getId(),
+            gameId,
             game.getWhite(),
             game.getBlack(),
             game.getResult(),
@@ -142,17 +719,41 @@ public class AnalysisService {
             game.getEvent(),
             playerSide
         );
-        
+
+        if (line == null) {
+            line = readOpening(game, gameId, plyIndex, MAX_OPENING_DEPTH, true);
+        }
+        line.addTo(root, 0, node -> node.addGame(gameRef));
+        return line;
+    }
+
+    /**
+     * Read the opening moves of a game.
+     *
+     * @param plyIndex Ply index to read the game's moves from, or null to replay them
+     * @param keepFen Whether replayed moves keep the FEN of their position
+     */
+    private OpeningLine readOpening(Game game, int gameId, ShardedPlyIndex plyIndex, int maxPlies, boolean keepFen) {
+        // Indexed games: the stored moves are already checked, so no replay is needed.
+        // Nodes built this way have no FEN; the board replays the node's move path instead.
+        int slot = plyIndex != null ? plyIndex.find(gameId) : -1;
+        if (slot >= 0) {
+            int plies = Math.min(plyIndex.getPlyCount(slot), maxPlies);
+            OpeningLine line = new OpeningLine(plies);
+            for (int ply = 0; ply < plies; ply++) {
+                // Full move number after the ply, as in the FEN of the position
+                line.add(plyIndex.getMove(slot, ply), null, (ply + 1) / 2 + 1);
+            }
+            return line;
+        }
+
         // Build chess engine to track position
         ChessEngineService engine = new ChessEngineService();
-        OpeningTreeNode currentNode = root;
-        
-        // Process moves up to MAX_OPENING_DEPTH
-        List<Move> moves = game.getMoves();
-        int moveCount = 0;
-        
-        for (Move move : moves) {
-            if (moveCount >= MAX_OPENING_DEPTH) {
+        OpeningLine line = new OpeningLine(maxPlies);
+
+        // Process moves up to maxPlies
+        for (Move move : game.getMoves()) {
+            if (line.size >= maxPlies) {
                 break;
             }
             
@@ -166,17 +767,127 @@ public class AnalysisService {
                 break; // Invalid move, stop processing
             }
             
-            // Get new position
-            String fen = engine.getFen();
-            int moveNumber = engine.getMoveNumber();
-            
-            // Get or create child node
-            currentNode = currentNode.getOrCreateChild(moveStr, fen, moveNumber);
-            
-            // Add game to this node
-            currentNode.addGame(gameRef);
-            
-            moveCount++;
+            line.add(moveStr, keepFen ? engine.getFen() : null, engine.getMoveNumber());
+        }
+        return line;
+    }
+
+    /**
+     * A published tree with the number of the build that produced it, the
+     * filters it was built with (null for the empty tree of clearTree), and
+     * the database and shards its games came from. Explorer trees also keep
+     * their unpruned tree, to merge appended games into.
+     */
+    private static class TreeSnapshot {
+        private final OpeningTreeNode root;
+        private final int build;
+        private final FilterCriteria filters;
+        private final ExplorerTree explorer;
+        private final int generation;
+        // Not modified once published
+        private final BitSet shards;
+
+        TreeSnapshot(OpeningTreeNode root, int build, FilterCriteria filters, ExplorerTree explorer,
+                     int generation, BitSet shards) {
+            this.root = root;
+            this.build = build;
+            this.filters = filters;
+            this.explorer = explorer;
+            this.generation = generation;
+            this.shards = shards;
+        }
+
+        /**
+         * Get a snapshot of the same build with a changed tree.
+         */
+        TreeSnapshot withRoot(OpeningTreeNode changed) {
+            return new TreeSnapshot(changed, build, filters, explorer, generation, shards);
+        }
+    }
+
+    /**
+     * A frozen, unpruned explorer tree with the depth it was limited to and
+     * its number of nodes.
+     */
+    private static class ExplorerTree {
+        private final OpeningTreeNode tree;
+        private final int depth;
+        private final int nodeCount;
+
+        ExplorerTree(OpeningTreeNode tree, int depth, int nodeCount) {
+            this.tree = tree;
+            this.depth = depth;
+            this.nodeCount = nodeCount;
+        }
+
+        /**
+         * Merge a tree of more games, cut to this tree's depth, into a copy,
+         * dropping levels again while the copy has more than EXPLORER_MAX_NODES.
+         */
+        ExplorerTree merge(OpeningTreeNode other) {
+            OpeningTreeNode limited = other.mutableCopy();
+            limited.truncate(depth);
+            OpeningTreeNode merged = tree.mutableCopy();
+            int count = nodeCount + merged.merge(limited);
+            int limit = depth;
+            while (count > EXPLORER_MAX_NODES && limit > 1) {
+                limit--;
+                count -= merged.truncate(limit);
+            }
+            merged.freeze();
+            return new ExplorerTree(merged, limit, count);
+        }
+    }
+
+    /**
+     * The opening moves of one game, read once and added to any number of trees.
+     */
+    private static class OpeningLine {
+        private final String[] moves;
+        private final String[] fens;
+        private final int[] moveNumbers;
+        private int size;
+
+        OpeningLine(int capacity) {
+            this.moves = new String[capacity];
+            this.fens = new String[capacity];
+            this.moveNumbers = new int[capacity];
+        }
+
+        void add(String move, String fen, int moveNumber) {
+            moves[size] = move;
+            fens[size] = fen;
+            moveNumbers[size] = moveNumber;
+            size++;
+        }
+
+        /**
+         * Check whether the line starts with the given moves.
+         */
+        boolean startsWith(List<String> path) {
+            if (path.size() > size) {
+                return false;
+            }
+            for (int i = 0; i < path.size(); i++) {
+                if (!moves[i].equals(path.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Walk the line from a root, creating nodes as needed, and record
+         * the game at every node it reaches.
+         *
+         * @param from Ply the root stands for; earlier moves are skipped
+         */
+        void addTo(OpeningTreeNode root, int from, Consumer<OpeningTreeNode> record) {
+            OpeningTreeNode currentNode = root;
+            for (int i = from; i < size; i++) {
+                currentNode = currentNode.getOrCreateChild(moves[i], fens[i], moveNumbers[i]);
+                record.accept(currentNode);
+            }
         }
     }
 
@@ -187,17 +898,17 @@ public class AnalysisService {
         if (filters.getPlayerName() == null || filters.getPlayerName().isEmpty()) {
             return PlayerSide.BOTH;
         }
-        
+
         String playerName = filters.getPlayerName().toLowerCase();
         String white = game.getWhite().toLowerCase();
         String black = game.getBlack().toLowerCase();
-        
+
         if (white.contains(playerName)) {
             return PlayerSide.WHITE;
         } else if (black.contains(playerName)) {
             return PlayerSide.BLACK;
         }
-        
+
         return PlayerSide.BOTH;
     }
 
@@ -205,7 +916,18 @@ public class AnalysisService {
      * Get the current tree.
      */
     public OpeningTreeNode getCurrentTree() {
-        return currentTree;
+        TreeSnapshot current = currentTree.get();
+        return current != null ? current.root : null;
+    }
+
+    /**
+     * Get the build number of the current tree. It changes with every
+     * buildTree, but not when the tree is updated with appended games or
+     * deepened lines.
+     */
+    public int getCurrentTreeBuild() {
+        TreeSnapshot current = currentTree.get();
+        return current != null ? current.build : 0;
     }
 
     /**
@@ -219,11 +941,11 @@ public class AnalysisService {
      * Navigate to a specific node in the tree by following a move path.
      */
     public OpeningTreeNode navigateToNode(List<String> movePath) {
-        if (currentTree == null) {
+        OpeningTreeNode node = getCurrentTree();
+        if (node == null) {
             return null;
         }
-        
-        OpeningTreeNode node = currentTree;
+
         for (String move : movePath) {
             node = node.getChild(move);
             if (node == null) {
@@ -234,27 +956,52 @@ public class AnalysisService {
     }
 
     /**
-     * Get statistics summary for current tree.
+     * Look up a position in the position index, without scanning the database.
+     *
+     * @throws IllegalStateException if the index is not ready yet
      */
-    public String getTreeStatistics() {
-        if (currentTree == null) {
-            return "No tree built";
+    public PositionStats explorePosition(String fen) {
+        ShardedPositionIndex index = databaseService.getPositionIndex();
+        if (index == null) {
+            throw new IllegalStateException("Position index is still being built");
         }
-        
-        int totalGames = currentTree.getGameCount();
-        int totalVariations = countNodes(currentTree) - 1; // Exclude root
-        
-        return String.format("Total Games: %d, Variations: %d", totalGames, totalVariations);
+        return index.lookup(fen);
+    }
+
+    /**
+     * Load references to games by database-wide id, stopping after limit games.
+     */
+    public List<GameReference> getGameReferences(int[] gameIds, int limit) throws IOException {
+        List<GameReference> references = new ArrayList<>();
+        for (int i = 0; i < gameIds.length && references.size() < limit; i++) {
+            Game game = databaseService.getGameById(gameIds[i]);
+            if (game != null) {
+                references.add(new GameReference(
+                    gameIds[i],
+                    game.getWhite(),
+                    game.getBlack(),
+                    game.getResult(),
+                    DateUtils.parsePgnDate(game.getDate()),
+                    game.getEvent(),
+                    PlayerSide.BOTH
+                ));
+            }
+        }
+        return references;
     }
 
     /**
-     * Count total nodes in tree.
+     * Get statistics summary for current tree.
      */
-    private int countNodes(OpeningTreeNode node) {
-        int count = 1;
-        for (OpeningTreeNode child : node.getChildren().values()) {
-            count += countNodes(child);
+    public String getTreeStatistics() {
+        OpeningTreeNode tree = getCurrentTree();
+        if (tree == null) {
+            return "No tree built";
         }
-        return count;
+
+        int totalGames = tree.getGameCount();
+        int totalVariations = tree.countNodes() - 1; // Exclude root
+
+        return String.format("Total Games: %d, Variations: %d", totalGames, totalVariations);
     }
 }
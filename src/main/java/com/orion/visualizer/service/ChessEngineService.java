@@ -123,6 +123,27 @@ public class ChessEngineService {
         }
     }
 
+    /**
+     * Get all 64 squares in one pass, indexed by rank * 8 + file.
+     * 
+     * @return Piece characters, with 0 for empty squares
+     */
+    public char[] getPieces() {
+        char[] pieces = new char[64];
+        try {
+            Position position = board.getPosition();
+            for (int square = 0; square < 64; square++) {
+                int piece = position.getPiece(square);
+                if (piece != Piece.NONE) {
+                    pieces[square] = pieceToChar(piece);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error reading board: " + e.getMessage());
+        }
+        return pieces;
+    }
+
     /**
      * Convert OrionDB piece constant to character.
      */
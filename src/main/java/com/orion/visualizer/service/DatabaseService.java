@@ -3,20 +3,61 @@ package com.orion.visualizer.service;
 import com.oriondb.core.OrionDatabase;
 import com.oriondb.model.Game;
 import com.oriondb.util.ProgressCallback;
+import com.orion.visualizer.util.PgnInputStreams;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Service for managing OrionDB database operations.
  * Singleton pattern to ensure single database instance.
+ *
+ * Queries hold the read lock, so any number of them (tree builds, V2 analysis,
+ * autocomplete) run concurrently. Loading and closing take the write lock and
+ * wait for in-flight queries to finish; the lock is fair so that a pending
+ * load is not starved by a steady stream of queries.
+ *
+ * The open database is a ShardedDatabase: either one OrionDB file or a shard
+ * manifest. Query results are ShardedGameLists; use resolveGameId to get the
+ * id of a result that getGameById accepts.
+ *
+ * After each load or append, the position and ply indexes of the database
+ * are opened, or rebuilt in the background when they are missing or stale.
+ * Each shard has its own position and ply index, so an append only indexes
+ * the games of the new shard.
  */
 public class DatabaseService {
     private static DatabaseService instance;
     
-    private OrionDatabase database;
-    private File currentDatabaseFile;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock(true);
+    private volatile ShardedDatabase database;
+    private volatile File currentDatabaseFile;
+    
+    // Shard files handed out to appends still importing; also serializes attaching them
+    private final Set<File> reservedShardFiles = new HashSet<>();
+    // Fingerprints shared by the appends to the database whose first shard is fingerprintsOf
+    private GameDeduplicator fingerprints;
+    private OrionDatabase fingerprintsOf;
+    
+    // Bumped whenever the open database changes, so that index builds for an older one stop
+    private final AtomicInteger databaseGeneration = new AtomicInteger();
+    // Bumped whenever a database is loaded or closed; appends keep the open shards and leave it
+    private final AtomicInteger loadGeneration = new AtomicInteger();
+    private volatile ShardedPositionIndex positionIndex;
+    private volatile ShardedPlyIndex plyIndex;
 
     private DatabaseService() {
     }
@@ -29,47 +70,205 @@ public class DatabaseService {
     }
 
     /**
-     * Create a new database from a PGN file.
+     * Create a new database from a PGN file. Duplicate games are dropped, and
+     * the fingerprints of the imported games are kept for later appends.
+     *
+     * The games are fingerprinted in a read-only pass first. OrionDB only
+     * imports from files, so a copy without the duplicates is written only if
+     * there are any; otherwise the PGN file is imported as it is.
      */
-    public OrionDatabase.ImportStats createDatabaseFromPgn(File pgnFile, File outputFile, 
-                                                           ProgressCallback callback) throws IOException, ClassNotFoundException {
+    public ImportSummary createDatabaseFromPgn(File pgnFile, File outputFile, 
+                                               ProgressCallback callback) throws IOException, ClassNotFoundException {
+        long startTime = System.currentTimeMillis();
+        
         // Close existing database if open
         closeDatabase();
         
-        // Create new database with position indexing enabled
-        OrionDatabase.ImportStats stats = OrionDatabase.createFromPgn(
-            pgnFile, outputFile, callback, true, false
-        );
+        GameDeduplicator deduplicator = GameDeduplicator.forPgn(pgnFile);
+        File fingerprintFile = GameDeduplicator.fileFor(outputFile);
+        fingerprintFile.delete();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(pgnFile), 1 << 16);
+             OutputStream out = new DeduplicatingPgnOutputStream(OutputStream.nullOutputStream(), deduplicator)) {
+            in.transferTo(out);
+        }
+        
+        File source = pgnFile;
+        File deduplicated = new File(outputFile.getPath() + ".pgn.part");
+        OrionDatabase.ImportStats stats;
+        try {
+            if (deduplicator.getDuplicatesDropped() > 0) {
+                // Copy the games without duplicates to a scratch file next to the output
+                deduplicator = GameDeduplicator.forPgn(pgnFile);
+                try (InputStream in = new FileInputStream(pgnFile)) {
+                    ShardedDatabase.writeDeduplicated(in, Long.MAX_VALUE, deduplicated, deduplicator);
+                }
+                source = deduplicated;
+            }
+            
+            // Create new database with position indexing enabled; the import does
+            // not touch the open database, so it runs without holding the lock
+            stats = OrionDatabase.createFromPgn(
+                source, outputFile, callback, true, false
+            );
+        } finally {
+            deduplicated.delete();
+        }
+        deduplicator.save(fingerprintFile);
         
         // Load the newly created database
         loadDatabase(outputFile);
         
-        return stats;
+        return new ImportSummary(stats.getGamesImported(), 1, 0, deduplicator.getDuplicatesDropped(),
+            System.currentTimeMillis() - startTime);
     }
 
     /**
-     * Load an existing database.
+     * Create a sharded database from a PGN file, importing the shards in parallel.
+     * Compressed files (.pgn.gz, .zip) are streamed into shards of bounded size
+     * instead, so the shard count depends on the archive size.
+     *
+     * @param manifestFile Manifest to write; shard files are created next to it
+     * @param shardCount Number of shards (and parallel imports)
      */
-    public void loadDatabase(File dbFile) throws IOException, ClassNotFoundException {
-        // Close existing database if open
+    public ImportSummary createShardedDatabaseFromPgn(File pgnFile, File manifestFile, int shardCount,
+                                                      ImportProgressListener listener)
+            throws IOException, ClassNotFoundException {
         closeDatabase();
         
-        database = OrionDatabase.load(dbFile);
-        currentDatabaseFile = dbFile;
+        ImportSummary summary = PgnInputStreams.isCompressed(pgnFile)
+            ? new StreamingPgnImporter(StreamingPgnImporter.DEFAULT_SEGMENT_BYTES, shardCount)
+                .importToShards(pgnFile, manifestFile, listener)
+            : ShardedDatabase.importFromPgn(pgnFile, manifestFile, shardCount, listener);
+        loadDatabase(manifestFile);
+        return summary;
+    }
+
+    /**
+     * Import the games of a PGN file into a new shard of the open database.
+     * A single-file database becomes a shard manifest next to it. Existing
+     * shards stay open and their game ids do not change; the summary's first
+     * shard identifies the appended games. Duplicates within the file and
+     * games already in the database are dropped.
+     */
+    public ImportSummary appendPgn(File pgnFile, ImportProgressListener listener)
+            throws IOException, ClassNotFoundException {
+        return appendPgn(pgnFile, 0, pgnFile.length(), listener);
+    }
+
+    /**
+     * Import the games in a byte range of a PGN file into a new shard of the
+     * open database, e.g. the games added to a file since it was last appended.
+     *
+     * @param start Offset of the first game to import
+     * @param end Offset past the last game to import
+     */
+    public ImportSummary appendPgn(File pgnFile, long start, long end, ImportProgressListener listener)
+            throws IOException, ClassNotFoundException {
+        long startTime = System.currentTimeMillis();
+        ShardedDatabase importTarget;
+        File shardFile;
+        File databaseFile;
+        GameDeduplicator deduplicator;
+        synchronized (reservedShardFiles) {
+            importTarget = requireDatabase();
+            databaseFile = currentDatabaseFile;
+            if (fingerprints == null || fingerprintsOf != importTarget.getShard(0)) {
+                // Read once per database; later appends see earlier ones' games as they import
+                fingerprints = GameDeduplicator.forAppend(databaseFile, pgnFile);
+                fingerprintsOf = importTarget.getShard(0);
+            }
+            deduplicator = fingerprints.newImport();
+            shardFile = importTarget.nextShardFile(reservedShardFiles);
+            reservedShardFiles.add(shardFile);
+        }
+        
+        boolean attached = false;
+        try {
+            // The import only writes a new file; queries and other appends run meanwhile
+            int games = ShardedDatabase.importShardFile(pgnFile, start, end, shardFile, deduplicator,
+                listener);
+            
+            // Attach shards one at a time, each to the latest database
+            synchronized (reservedShardFiles) {
+                lock.writeLock().lock();
+                try {
+                    ShardedDatabase current = database;
+                    if (current == null || current.getShardCount() < importTarget.getShardCount()
+                            || current.getShard(0) != importTarget.getShard(0)) {
+                        shardFile.delete();
+                        throw new IllegalStateException("Database was replaced during append");
+                    }
+                    database = current.withShard(shardFile, games);
+                    currentDatabaseFile = database.getManifestFile();
+                    databaseGeneration.incrementAndGet();
+                    attached = true;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                try {
+                    // Appends attach one at a time, so each merges its games into the latest file
+                    deduplicator.save(GameDeduplicator.fileFor(databaseFile));
+                } catch (IOException e) {
+                    System.err.println("Error saving game fingerprints: " + e.getMessage());
+                }
+                prepareIndexes();
+                
+                int shard = database.getShardCount() - 1;
+                return new ImportSummary(games, 1, shard, deduplicator.getDuplicatesDropped(),
+                    System.currentTimeMillis() - startTime);
+            }
+        } finally {
+            if (!attached) {
+                // Its games are not in the database, so later appends must not drop them
+                deduplicator.discard();
+            }
+            synchronized (reservedShardFiles) {
+                reservedShardFiles.remove(shardFile);
+            }
+        }
+    }
+
+    /**
+     * Load an existing database (a .oriondb file or a shard manifest).
+     */
+    public void loadDatabase(File dbFile) throws IOException, ClassNotFoundException {
+        lock.writeLock().lock();
+        try {
+            // Close existing database if open
+            closeDatabase();
+            
+            database = ShardedDatabase.open(dbFile);
+            currentDatabaseFile = dbFile;
+            databaseGeneration.incrementAndGet();
+            loadGeneration.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        prepareIndexes();
     }
 
     /**
      * Close the current database.
      */
     public void closeDatabase() {
-        if (database != null) {
-            try {
-                database.close();
-            } catch (IOException e) {
-                System.err.println("Error closing database: " + e.getMessage());
+        // Let running index and tree builds stop before waiting for the lock
+        databaseGeneration.incrementAndGet();
+        loadGeneration.incrementAndGet();
+        positionIndex = null;
+        plyIndex = null;
+        lock.writeLock().lock();
+        try {
+            if (database != null) {
+                try {
+                    database.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing database: " + e.getMessage());
+                }
+                database = null;
+                currentDatabaseFile = null;
             }
-            database = null;
-            currentDatabaseFile = null;
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -81,10 +280,176 @@ public class DatabaseService {
     }
 
     /**
-     * Get the current database instance.
+     * Get the OrionDB instance of a single-file database (null when sharded or closed).
+     * The instance may be closed by another thread at any time; prefer the
+     * query methods of this service, which hold the read lock.
      */
     public OrionDatabase getDatabase() {
-        return database;
+        ShardedDatabase db = database;
+        return db != null && db.getShardCount() == 1 ? db.getShard(0) : null;
+    }
+
+    /**
+     * Get the number of shards of the open database (0 if none).
+     */
+    public int getShardCount() {
+        ShardedDatabase db = database;
+        return db != null ? db.getShardCount() : 0;
+    }
+
+    /**
+     * Get the database-wide id of a query result, as accepted by getGameById.
+     */
+    public int resolveGameId(List<Game> results, int index) {
+        if (results instanceof ShardedGameList) {
+            return ((ShardedGameList) results).globalIdAt(index);
+        }
+        return results.get(index).getId();
+    }
+
+    /**
+     * Get the position index of the open database, or null while it is being built.
+     */
+    public ShardedPositionIndex getPositionIndex() {
+        return positionIndex;
+    }
+
+    /**
+     * Get the ply index of the open database, or null while it is being built.
+     * Games missing from it (appended since it was built) must be replayed.
+     */
+    public ShardedPlyIndex getPlyIndex() {
+        return plyIndex;
+    }
+
+    /**
+     * Open the indexes of the current database in the background, building
+     * them first when they are missing or do not cover all games.
+     */
+    private void prepareIndexes() {
+        int generation = databaseGeneration.get();
+        File dbFile = currentDatabaseFile;
+        // The ply index stays usable for the games it covers until the new one is ready
+        positionIndex = null;
+        if (dbFile == null) {
+            return;
+        }
+        
+        CompletableFuture.runAsync(() -> {
+            try {
+                openOrBuildIndexes(generation);
+            } catch (Exception e) {
+                System.err.println("Error building database indexes: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Open the position and ply indexes of every shard, rebuilding the stale
+     * ones of a shard in one pass over its games. Nothing is published if the
+     * database changes meanwhile.
+     */
+    private void openOrBuildIndexes(int generation) throws Exception {
+        int shardCount = getShardCount();
+        int maxPlies = AnalysisService.MAX_OPENING_DEPTH;
+        List<PositionIndex> positions = new ArrayList<>();
+        List<PlyIndex> plies = new ArrayList<>();
+        int[] idBases = new int[shardCount];
+        long startTime = System.currentTimeMillis();
+        boolean built = false;
+        
+        for (int shard = 0; shard < shardCount; shard++) {
+            File shardFile = getShardFile(shard);
+            int shardGames = getShardGameCount(shard);
+            idBases[shard] = getShardIdBase(shard);
+            File positionFile = PositionIndex.indexFileFor(shardFile);
+            File plyFile = PlyIndex.indexFileFor(shardFile);
+            
+            PositionIndex shardPositions = null;
+            if (positionFile.exists()) {
+                try {
+                    PositionIndex existing = PositionIndex.open(positionFile);
+                    shardPositions = existing.getIndexedGameCount() == shardGames
+                        && existing.isBuiltFrom(shardFile) ? existing : null;
+                } catch (IOException e) {
+                    System.err.println("Rebuilding unreadable position index: " + e.getMessage());
+                }
+            }
+            PlyIndex shardPlies = null;
+            if (plyFile.exists()) {
+                try {
+                    PlyIndex existing = PlyIndex.open(plyFile);
+                    shardPlies = existing.getIndexedGameCount() == shardGames
+                        && existing.getMaxPlies() == maxPlies && existing.isBuiltFrom(shardFile) ? existing : null;
+                } catch (IOException e) {
+                    System.err.println("Rebuilding unreadable ply index: " + e.getMessage());
+                }
+            }
+            
+            if (shardPositions == null || shardPlies == null) {
+                built = true;
+                // A shard missing only its position index is read from its ply index
+                PlyIndex source = shardPlies;
+                int currentShard = shard;
+                try (PositionIndex.Builder positionBuilder = shardPositions == null
+                         ? new PositionIndex.Builder(positionFile, shardFile, maxPlies) : null;
+                     PlyIndex.Builder plyBuilder = shardPlies == null
+                         ? new PlyIndex.Builder(plyFile, shardFile, maxPlies) : null) {
+                    // One shard per read lock hold, so loads are not held up for a whole build
+                    boolean complete = withReadLock(() -> {
+                        List<Game> games = getShardGames(currentShard);
+                        for (int i = 0; i < games.size(); i++) {
+                            if (databaseGeneration.get() != generation) {
+                                return false;
+                            }
+                            Game game = games.get(i);
+                            int gameId = resolveGameId(games, i);
+                            int slot = source != null ? source.find(gameId) : -1;
+                            OpeningReplay replay = slot >= 0
+                                ? source.replayOf(slot) : OpeningReplay.of(game, maxPlies);
+                            if (positionBuilder != null) {
+                                positionBuilder.addGame(replay, game.getResult(), gameId);
+                            }
+                            if (plyBuilder != null) {
+                                plyBuilder.addGame(replay, gameId);
+                            }
+                        }
+                        return true;
+                    });
+                    if (!complete) {
+                        return;
+                    }
+                    
+                    if (positionBuilder != null) {
+                        positionBuilder.write();
+                        shardPositions = PositionIndex.open(positionFile);
+                    }
+                    if (plyBuilder != null) {
+                        plyBuilder.write();
+                        shardPlies = PlyIndex.open(plyFile);
+                    }
+                }
+            }
+            positions.add(shardPositions);
+            plies.add(shardPlies);
+        }
+        if (built) {
+            MetricsService.getInstance().setGauge("indexes.buildMs", System.currentTimeMillis() - startTime);
+        }
+        
+        if (databaseGeneration.get() == generation) {
+            positionIndex = new ShardedPositionIndex(positions);
+            plyIndex = new ShardedPlyIndex(plies, idBases);
+        }
+    }
+
+    /**
+     * Get the number of times a database was loaded or closed. Games and
+     * query results read under an earlier value may belong to a closed
+     * database; appended shards do not change it.
+     */
+    public int getLoadGeneration() {
+        return loadGeneration.get();
     }
 
     /**
@@ -94,71 +459,158 @@ public class DatabaseService {
         return currentDatabaseFile;
     }
 
+    /**
+     * Run work while holding the read lock, so that the database cannot be
+     * closed or replaced until it finishes (e.g. while games returned by a
+     * query are still being read). Query methods may be called from the work.
+     */
+    public <T> T withReadLock(Callable<T> work) throws Exception {
+        lock.readLock().lock();
+        try {
+            return work.call();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     /**
      * Search for games by player name.
      */
     public List<Game> searchByPlayer(String playerName) throws IOException {
-        if (database == null) {
-            throw new IllegalStateException("No database loaded");
+        lock.readLock().lock();
+        try {
+            return requireDatabase().searchByPlayer(playerName);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Search one shard for games by player name.
+     */
+    public List<Game> searchShardByPlayer(int shard, String playerName) throws IOException {
+        lock.readLock().lock();
+        try {
+            return requireDatabase().searchShardByPlayer(shard, playerName);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get all games of one shard.
+     */
+    public List<Game> getShardGames(int shard) throws IOException {
+        lock.readLock().lock();
+        try {
+            return requireDatabase().getShardGames(shard);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the file of one shard.
+     */
+    public File getShardFile(int shard) {
+        lock.readLock().lock();
+        try {
+            return requireDatabase().getShardFile(shard);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the database-wide id of the first game of one shard.
+     */
+    public int getShardIdBase(int shard) {
+        lock.readLock().lock();
+        try {
+            return requireDatabase().getIdBase(shard);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of games of one shard.
+     */
+    public int getShardGameCount(int shard) {
+        lock.readLock().lock();
+        try {
+            return requireDatabase().getShard(shard).getGameCount();
+        } finally {
+            lock.readLock().unlock();
         }
-        return database.search()
-            .withPlayer(playerName)
-            .execute();
     }
 
     /**
      * Search for games by player name and side.
      */
     public List<Game> searchByPlayerAndSide(String playerName, boolean asWhite) throws IOException {
-        if (database == null) {
-            throw new IllegalStateException("No database loaded");
+        lock.readLock().lock();
+        try {
+            // Note: OrionDB SearchBuilder uses withPlayer() for both white and black
+            // We'll need to filter by side in post-processing
+            return requireDatabase().searchByPlayer(playerName);
+        } finally {
+            lock.readLock().unlock();
         }
-        
-        // Note: OrionDB SearchBuilder uses withPlayer() for both white and black
-        // We'll need to filter by side in post-processing
-        return database.search()
-            .withPlayer(playerName)
-            .execute();
     }
 
     /**
      * Get all games from the database.
      */
     public List<Game> getAllGames() throws IOException {
-        if (database == null) {
-            throw new IllegalStateException("No database loaded");
+        lock.readLock().lock();
+        try {
+            return requireDatabase().getAllGames();
+        } finally {
+            lock.readLock().unlock();
         }
-        return database.search().execute();
     }
 
     /**
      * Get a game by ID.
      */
     public Game getGameById(int gameId) throws IOException {
-        if (database == null) {
-            throw new IllegalStateException("No database loaded");
+        lock.readLock().lock();
+        try {
+            return requireDatabase().getGameById(gameId);
+        } finally {
+            lock.readLock().unlock();
         }
-        return database.getGameById(gameId);
     }
 
     /**
      * Get database statistics.
      */
     public String getDatabaseStats() {
-        if (database == null) {
-            return "No database loaded";
+        lock.readLock().lock();
+        try {
+            if (database == null) {
+                return "No database loaded";
+            }
+            return database.getStats();
+        } finally {
+            lock.readLock().unlock();
         }
-        return database.getStats();
     }
 
     /**
      * Get total game count.
      */
     public int getGameCount() {
-        if (database == null) {
-            return 0;
+        lock.readLock().lock();
+        try {
+            if (database == null) {
+                return 0;
+            }
+            return database.getGameCount();
+        } finally {
+            lock.readLock().unlock();
         }
-        return database.getGameCount();
     }
 
     /**
@@ -167,15 +619,9 @@ public class DatabaseService {
      * this should be optimized with an index.
      */
     public List<String> findPlayerNames(String searchTerm) throws IOException {
-        if (database == null) {
-            throw new IllegalStateException("No database loaded");
-        }
-        
         // For now, return games matching the search term
         // In a production system, this would query a player name index
-        List<Game> games = database.search()
-            .withPlayer(searchTerm)
-            .execute();
+        List<Game> games = searchByPlayer(searchTerm);
         
         // Extract unique player names
         return games.stream()
@@ -186,4 +632,15 @@ public class DatabaseService {
             .limit(20)
             .toList();
     }
+
+    /**
+     * Get the open database or fail. Caller must hold the read lock.
+     */
+    private ShardedDatabase requireDatabase() {
+        ShardedDatabase db = database;
+        if (db == null) {
+            throw new IllegalStateException("No database loaded");
+        }
+        return db;
+    }
 }
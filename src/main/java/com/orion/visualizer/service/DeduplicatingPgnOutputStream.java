@@ -0,0 +1,105 @@
+package com.orion.visualizer.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Passes PGN text through game by game, dropping games whose fingerprint was
+ * already recorded in the deduplicator.
+ *
+ * Games are delimited by lines starting with "[Event ". Text before the first
+ * game is passed through unchanged. The games completed by a write are
+ * emitted in place, and the unfinished one is moved to the start of the
+ * buffer once per write.
+ */
+public class DeduplicatingPgnOutputStream extends FilterOutputStream {
+    private static final byte[] GAME_START = "\n[Event ".getBytes(StandardCharsets.US_ASCII);
+
+    private final GameDeduplicator deduplicator;
+    private byte[] game = new byte[1 << 14];
+    private int length;
+    private int scanFrom = 1;
+    private long duplicatesDropped;
+
+    public DeduplicatingPgnOutputStream(OutputStream out, GameDeduplicator deduplicator) {
+        super(out);
+        this.deduplicator = deduplicator;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int count) throws IOException {
+        if (length + count > game.length) {
+            game = Arrays.copyOf(game, Math.max(game.length * 2, length + count));
+        }
+        System.arraycopy(buffer, offset, game, length, count);
+        length += count;
+
+        // Emit every complete game; the buffer always starts at a game start
+        int gameStart = 0;
+        int next;
+        while ((next = findNextGame(gameStart)) >= 0) {
+            emit(gameStart, next);
+            gameStart = next;
+        }
+        if (gameStart > 0) {
+            System.arraycopy(game, gameStart, game, 0, length - gameStart);
+            length -= gameStart;
+        }
+        scanFrom = Math.max(1, length - GAME_START.length + 1);
+    }
+
+    /**
+     * Number of games dropped by this stream.
+     */
+    public long getDuplicatesDropped() {
+        return duplicatesDropped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (length > 0) {
+                emit(0, length);
+                length = 0;
+            }
+        } finally {
+            super.close();
+        }
+    }
+
+    /**
+     * Index of the '[' that starts the game after the one at gameStart, or -1.
+     */
+    private int findNextGame(int gameStart) {
+        outer:
+        for (int i = Math.max(scanFrom, gameStart + 1) - 1; i <= length - GAME_START.length; i++) {
+            for (int j = 0; j < GAME_START.length; j++) {
+                if (game[i + j] != GAME_START[j]) {
+                    continue outer;
+                }
+            }
+            return i + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Write a range of the buffer unless it is a duplicate game.
+     */
+    private void emit(int start, int end) throws IOException {
+        GameFingerprint fingerprint = GameFingerprint.of(game, start, end - start);
+        if (fingerprint == null || deduplicator.add(fingerprint)) {
+            out.write(game, start, end - start);
+        } else {
+            duplicatesDropped++;
+        }
+    }
+}
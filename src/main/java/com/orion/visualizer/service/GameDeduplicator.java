@@ -0,0 +1,395 @@
+package com.orion.visualizer.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Set of game fingerprints: those of the games already in a database and
+ * those seen during an import.
+ *
+ * The fingerprints of a database's games are kept next to it in a file of
+ * (high, low) pairs sorted by value, which is memory-mapped and binary-searched
+ * in place. Only the fingerprints of the running import are held in memory, in
+ * an open-addressing table (two longs per game). A Bloom filter over both
+ * answers most lookups for new games without a search. Shared by the parallel
+ * shard imports, so methods are synchronized.
+ *
+ * After a successful import, save() merges the import's fingerprints into the
+ * database's file, so later appends are checked against them.
+ *
+ * Concurrent appends to one database share a deduplicator, each through the
+ * view returned by newImport(), so they drop each other's games as well.
+ * A view counts and saves only the games of its own import, and discard()
+ * forgets them if the import fails.
+ */
+public class GameDeduplicator {
+    public static final String EXTENSION = ".fingerprints";
+    private static final int MAGIC = 0x4F465053; // "OFPS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int ENTRY_BYTES = 16;
+    private static final int BLOOM_BITS_PER_GAME = 10;
+    private static final int BLOOM_HASHES = 7;
+    /** Rough size of a game in PGN, used to estimate the game count from a file size. */
+    private static final int BYTES_PER_GAME_ESTIMATE = 600;
+    /** Typical compression ratio of PGN archives. */
+    private static final int COMPRESSION_RATIO_ESTIMATE = 6;
+
+    private final long[] bloom;
+    private final long bloomBits;
+
+    // Sorted fingerprints of the database's games, or null
+    private final ByteBuffer existing;
+    private final long existingCount;
+
+    private long[] highs;
+    private long[] lows;
+    // Import that recorded each table entry; 0 outside of newImport()
+    private int[] importIds;
+    private int size;
+
+    // For a view: the shared deduplicator and the id of the view's import
+    private final GameDeduplicator shared;
+    private final int importId;
+    private final BitSet discardedImports = new BitSet();
+    private int nextImportId = 1;
+
+    private long gamesSeen;
+    private long duplicatesDropped;
+    private long bloomFalsePositives;
+
+    public GameDeduplicator(long expectedGames) {
+        this(null, expectedGames);
+    }
+
+    private GameDeduplicator(ByteBuffer existing, long expectedGames) {
+        this.shared = null;
+        this.importId = 0;
+        this.existing = existing;
+        this.existingCount = existing != null ? existing.getLong(8) : 0;
+        long bits = Math.max(1 << 16, (existingCount + expectedGames) * BLOOM_BITS_PER_GAME);
+        this.bloom = new long[(int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) >>> 6)];
+        this.bloomBits = (long) bloom.length << 6;
+        // The exact table grows as needed rather than reserving space for every expected game
+        int capacity = Integer.highestOneBit((int) Math.min(1 << 20, Math.max(1 << 10, expectedGames)));
+        this.highs = new long[capacity * 2];
+        this.lows = new long[capacity * 2];
+        this.importIds = new int[capacity * 2];
+
+        for (long i = 0; i < existingCount; i++) {
+            int entry = (int) (HEADER_BYTES + i * ENTRY_BYTES);
+            addToBloom(existing.getLong(entry), existing.getLong(entry + 8));
+        }
+    }
+
+    private GameDeduplicator(GameDeduplicator shared, int importId) {
+        this.shared = shared;
+        this.importId = importId;
+        this.existing = null;
+        this.existingCount = 0;
+        this.bloom = null;
+        this.bloomBits = 0;
+    }
+
+    /**
+     * Create a deduplicator sized for the games of a (possibly compressed) PGN file.
+     */
+    public static GameDeduplicator forPgn(File pgnFile) {
+        return new GameDeduplicator(estimateGames(pgnFile));
+    }
+
+    /**
+     * Create a deduplicator for appending a PGN file to a database, which
+     * also drops the games already in the database. A database without a
+     * fingerprint file (created before they were kept) is not checked.
+     */
+    public static GameDeduplicator forAppend(File databaseFile, File pgnFile) throws IOException {
+        return new GameDeduplicator(map(fileFor(databaseFile)), estimateGames(pgnFile));
+    }
+
+    /**
+     * Get the fingerprint file belonging to a database file or shard manifest.
+     */
+    public static File fileFor(File databaseFile) {
+        String name = databaseFile.getName().replaceFirst("\\.(oriondb|orionshards)$", "");
+        return new File(databaseFile.getAbsoluteFile().getParentFile(), name + EXTENSION);
+    }
+
+    private static long estimateGames(File pgnFile) {
+        long bytes = pgnFile.length();
+        String name = pgnFile.getName().toLowerCase();
+        if (name.endsWith(".gz") || name.endsWith(".zip")) {
+            bytes *= COMPRESSION_RATIO_ESTIMATE;
+        }
+        return bytes / BYTES_PER_GAME_ESTIMATE;
+    }
+
+    /**
+     * Map a fingerprint file into memory.
+     *
+     * @return The mapped file, or null if it does not exist
+     */
+    private static ByteBuffer map(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Fingerprint file too large to map: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || HEADER_BYTES + buffer.getLong(8) * ENTRY_BYTES > buffer.capacity()) {
+                throw new IOException("Not a fingerprint file: " + file);
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Start an import that records its games in this deduplicator.
+     *
+     * @return The view to import through
+     */
+    public synchronized GameDeduplicator newImport() {
+        return new GameDeduplicator(this, nextImportId++);
+    }
+
+    /**
+     * Forget the games recorded through this view, e.g. because its import failed.
+     */
+    public void discard() {
+        if (shared != null) {
+            shared.discardImport(importId);
+        }
+    }
+
+    private synchronized void discardImport(int id) {
+        discardedImports.set(id);
+    }
+
+    /**
+     * Record a game.
+     *
+     * @return false if a game with the same fingerprint was already recorded
+     */
+    public synchronized boolean add(GameFingerprint fingerprint) {
+        if (shared != null) {
+            gamesSeen++;
+            if (!shared.add(fingerprint.getHigh(), fingerprint.getLow(), importId)) {
+                duplicatesDropped++;
+                return false;
+            }
+            return true;
+        }
+        return add(fingerprint.getHigh(), fingerprint.getLow(), 0);
+    }
+
+    private synchronized boolean add(long high, long low, int id) {
+        if (high == 0 && low == 0) {
+            // (0, 0) marks empty slots in the exact table
+            low = 1;
+        }
+        gamesSeen++;
+
+        if (mightContain(high, low)) {
+            if (tableContains(high, low) || existingContains(high, low)) {
+                duplicatesDropped++;
+                return false;
+            }
+            bloomFalsePositives++;
+        } else {
+            addToBloom(high, low);
+        }
+        tableInsert(high, low, id);
+        return true;
+    }
+
+    public synchronized long getGamesSeen() {
+        return gamesSeen;
+    }
+
+    public synchronized long getDuplicatesDropped() {
+        return duplicatesDropped;
+    }
+
+    /**
+     * Number of new games the Bloom filter could not rule out; a high share
+     * means it was sized for far fewer games than were imported.
+     */
+    public synchronized long getBloomFalsePositives() {
+        return bloomFalsePositives;
+    }
+
+    /**
+     * Merge the fingerprints recorded by this import into a fingerprint file,
+     * replacing it atomically. The file is read again, so fingerprints saved
+     * by other imports since this one started are kept.
+     */
+    public void save(File file) throws IOException {
+        long[][] recorded = shared != null ? shared.recorded(importId) : recorded(-1);
+        long[] newHighs = recorded[0];
+        long[] newLows = recorded[1];
+        int count = newHighs.length;
+        LongPairs.sort(newHighs, newLows, 0, count - 1);
+
+        ByteBuffer current = map(file);
+        long currentCount = current != null ? current.getLong(8) : 0;
+        long total = currentCount + count;
+        for (int j = 0; j < count; j++) {
+            if (contains(current, currentCount, newHighs[j], newLows[j])) {
+                total--;
+            }
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(total);
+
+            // Merge the two sorted runs, writing fingerprints in both once
+            long i = 0;
+            int j = 0;
+            while (i < currentCount || j < count) {
+                int entry = (int) (HEADER_BYTES + i * ENTRY_BYTES);
+                int cmp = i == currentCount ? 1 : j == count ? -1
+                    : LongPairs.compare(current.getLong(entry), current.getLong(entry + 8),
+                                        newHighs[j], newLows[j]);
+                if (cmp <= 0) {
+                    out.writeLong(current.getLong(entry));
+                    out.writeLong(current.getLong(entry + 8));
+                    i++;
+                    if (cmp == 0) {
+                        j++;
+                    }
+                } else {
+                    out.writeLong(newHighs[j]);
+                    out.writeLong(newLows[j]);
+                    j++;
+                }
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Copy the fingerprints recorded by an import, or by all imports not discarded.
+     *
+     * @param id Import id, or -1 for all
+     * @return The high and low halves
+     */
+    private synchronized long[][] recorded(int id) {
+        long[] recordedHighs = new long[size];
+        long[] recordedLows = new long[size];
+        int count = 0;
+        for (int i = 0; i < highs.length; i++) {
+            if ((highs[i] != 0 || lows[i] != 0)
+                    && (id < 0 ? !discardedImports.get(importIds[i]) : importIds[i] == id)) {
+                recordedHighs[count] = highs[i];
+                recordedLows[count] = lows[i];
+                count++;
+            }
+        }
+        return new long[][] {Arrays.copyOf(recordedHighs, count), Arrays.copyOf(recordedLows, count)};
+    }
+
+    // Kirsch-Mitzenmacher: the i-th index is high + i * low
+
+    private boolean mightContain(long high, long low) {
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = Math.floorMod(high + i * low, bloomBits);
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addToBloom(long high, long low) {
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = Math.floorMod(high + i * low, bloomBits);
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private boolean existingContains(long high, long low) {
+        return contains(existing, existingCount, high, low);
+    }
+
+    /**
+     * Binary-search the sorted entries of a fingerprint file.
+     */
+    private static boolean contains(ByteBuffer buffer, long count, long high, long low) {
+        long first = 0;
+        long last = count - 1;
+        while (first <= last) {
+            long mid = (first + last) >>> 1;
+            int entry = (int) (HEADER_BYTES + mid * ENTRY_BYTES);
+            int cmp = LongPairs.compare(buffer.getLong(entry), buffer.getLong(entry + 8), high, low);
+            if (cmp < 0) {
+                first = mid + 1;
+            } else if (cmp > 0) {
+                last = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean tableContains(long high, long low) {
+        int mask = highs.length - 1;
+        for (int slot = (int) low & mask; ; slot = (slot + 1) & mask) {
+            if (highs[slot] == high && lows[slot] == low && !discardedImports.get(importIds[slot])) {
+                return true;
+            }
+            if (highs[slot] == 0 && lows[slot] == 0) {
+                return false;
+            }
+        }
+    }
+
+    private void tableInsert(long high, long low, int id) {
+        if ((size + 1) * 4L > highs.length * 3L) {
+            grow();
+        }
+        int mask = highs.length - 1;
+        int slot = (int) low & mask;
+        while (highs[slot] != 0 || lows[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        highs[slot] = high;
+        lows[slot] = low;
+        importIds[slot] = id;
+        size++;
+    }
+
+    private void grow() {
+        long[] oldHighs = highs;
+        long[] oldLows = lows;
+        int[] oldImportIds = importIds;
+        highs = new long[oldHighs.length * 2];
+        lows = new long[oldLows.length * 2];
+        importIds = new int[oldImportIds.length * 2];
+        size = 0;
+        for (int i = 0; i < oldHighs.length; i++) {
+            if (oldHighs[i] != 0 || oldLows[i] != 0) {
+                tableInsert(oldHighs[i], oldLows[i], oldImportIds[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.orion.visualizer.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 128-bit fingerprint of a PGN game, used to recognize the same game coming
+ * from different sources.
+ *
+ * The fingerprint covers the White, Black, Date and Result headers, normalized
+ * so that case, spacing and punctuation in names do not matter, and the main
+ * line SAN moves. Comments, variations, NAGs, move numbers and check or
+ * annotation suffixes are ignored, as are headers such as Event and Site that
+ * differ between sources.
+ */
+public final class GameFingerprint {
+    private static final String[] KEY_TAGS = {"White", "Black", "Date", "Result"};
+
+    private final long high;
+    private final long low;
+
+    GameFingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * Fingerprint the PGN text of one game.
+     *
+     * @return The fingerprint, or null if the text holds no game (e.g. a file preamble)
+     */
+    public static GameFingerprint of(byte[] pgn, int offset, int length) {
+        String text = new String(pgn, offset, length, StandardCharsets.ISO_8859_1);
+        String[] tags = new String[KEY_TAGS.length];
+        Hasher hasher = new Hasher();
+        int pos = 0;
+        boolean anyContent = false;
+
+        // Header section
+        while (pos < text.length()) {
+            int lineEnd = text.indexOf('\n', pos);
+            if (lineEnd < 0) {
+                lineEnd = text.length();
+            }
+            String line = text.substring(pos, lineEnd).trim();
+            if (line.startsWith("[")) {
+                readTag(line, tags);
+                anyContent = true;
+            } else if (!line.isEmpty()) {
+                break;
+            }
+            pos = lineEnd + 1;
+        }
+
+        for (String tag : tags) {
+            hasher.add(tag != null ? tag : "");
+            hasher.separator();
+        }
+
+        // Main line moves
+        int depth = 0;
+        int textLength = text.length();
+        while (pos < textLength) {
+            char c = text.charAt(pos);
+            if (c == '{') {
+                int end = text.indexOf('}', pos);
+                pos = end < 0 ? textLength : end + 1;
+            } else if (c == ';') {
+                int end = text.indexOf('\n', pos);
+                pos = end < 0 ? textLength : end + 1;
+            } else if (c == '(') {
+                depth++;
+                pos++;
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+                pos++;
+            } else if (Character.isWhitespace(c)) {
+                pos++;
+            } else {
+                int end = pos;
+                while (end < textLength && !isTokenEnd(text.charAt(end))) {
+                    end++;
+                }
+                if (depth == 0) {
+                    String san = normalizeMove(text.substring(pos, end));
+                    if (san != null) {
+                        hasher.add(san);
+                        hasher.separator();
+                        anyContent = true;
+                    }
+                }
+                pos = end;
+            }
+        }
+
+        return anyContent ? new GameFingerprint(hasher.high(), hasher.low()) : null;
+    }
+
+    /**
+     * Store the normalized value of a key tag.
+     */
+    private static void readTag(String line, String[] tags) {
+        int space = line.indexOf(' ');
+        int open = line.indexOf('"');
+        int close = line.lastIndexOf('"');
+        if (space < 0 || open < 0 || close <= open) {
+            return;
+        }
+        String name = line.substring(1, space);
+        for (int i = 0; i < KEY_TAGS.length; i++) {
+            if (KEY_TAGS[i].equals(name)) {
+                String value = line.substring(open + 1, close);
+                tags[i] = i < 2 ? normalizeName(value) : value.trim();
+            }
+        }
+    }
+
+    /**
+     * Lower-case letters and digits of a player name; "Carlsen, Magnus" and
+     * "carlsen,magnus" normalize to the same value.
+     */
+    private static String normalizeName(String name) {
+        StringBuilder normalized = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Strip move numbers and suffixes from a movetext token.
+     *
+     * @return The bare SAN move, or null for tokens that are not moves
+     */
+    private static String normalizeMove(String token) {
+        if (token.startsWith("$") || token.equals("1-0") || token.equals("0-1")
+                || token.equals("1/2-1/2") || token.equals("*")) {
+            return null;
+        }
+        // "12." and "12...e5" style move numbers
+        int start = 0;
+        while (start < token.length() && Character.isDigit(token.charAt(start))) {
+            start++;
+        }
+        if (start > 0 && start < token.length() && token.charAt(start) == '.') {
+            while (start < token.length() && token.charAt(start) == '.') {
+                start++;
+            }
+        } else {
+            start = 0;
+        }
+        int end = token.length();
+        while (end > start && "+#!?".indexOf(token.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return end > start ? token.substring(start, end) : null;
+    }
+
+    static boolean isTokenEnd(char c) {
+        return Character.isWhitespace(c) || c == '{' || c == '(' || c == ')' || c == ';';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GameFingerprint)) return false;
+        GameFingerprint that = (GameFingerprint) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high ^ low);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+    /**
+     * Two independent 64-bit FNV-style lanes with a final avalanche.
+     */
+    private static class Hasher {
+        private long h1 = 0xcbf29ce484222325L;
+        private long h2 = 0x84222325cbf29ce4L;
+
+        void add(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                h1 = (h1 ^ c) * 0x100000001b3L;
+                h2 = Long.rotateLeft((h2 ^ c) * 0x9e3779b97f4a7c15L, 29);
+            }
+        }
+
+        void separator() {
+            h1 = (h1 ^ 0x1f) * 0x100000001b3L;
+            h2 = Long.rotateLeft((h2 ^ 0x1f) * 0x9e3779b97f4a7c15L, 29);
+        }
+
+        long high() {
+            return mix(h1);
+        }
+
+        long low() {
+            return mix(h2 ^ h1);
+        }
+
+        private static long mix(long x) {
+            x ^= x >>> 33;
+            x *= 0xff51afd7ed558ccdL;
+            x ^= x >>> 33;
+            x *= 0xc4ceb9fe1a85ec53L;
+            x ^= x >>> 33;
+            return x;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.orion.visualizer.service;
+
+/**
+ * Receives progress of an import spanning several OrionDB imports.
+ * May be called from any thread.
+ */
+@FunctionalInterface
+public interface ImportProgressListener {
+    /**
+     * @param fraction Overall progress from 0 to 1
+     * @param message Human-readable progress message
+     */
+    void onProgress(double fraction, String message);
+}
@@ -0,0 +1,62 @@
+package com.orion.visualizer.service;
+
+/**
+ * Result of an import.
+ */
+public class ImportSummary {
+    private final int gamesImported;
+    private final int shardCount;
+    private final int firstShard;
+    private final long duplicatesDropped;
+    private final long elapsedMillis;
+
+    public ImportSummary(int gamesImported, int shardCount, long elapsedMillis) {
+        this(gamesImported, shardCount, 0, elapsedMillis);
+    }
+
+    /**
+     * @param firstShard Index of the first shard created by this import
+     */
+    public ImportSummary(int gamesImported, int shardCount, int firstShard, long elapsedMillis) {
+        this(gamesImported, shardCount, firstShard, 0, elapsedMillis);
+    }
+
+    /**
+     * @param duplicatesDropped Games skipped because they were already imported
+     */
+    public ImportSummary(int gamesImported, int shardCount, int firstShard, long duplicatesDropped,
+                         long elapsedMillis) {
+        this.gamesImported = gamesImported;
+        this.shardCount = shardCount;
+        this.firstShard = firstShard;
+        this.duplicatesDropped = duplicatesDropped;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getGamesImported() {
+        return gamesImported;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public int getFirstShard() {
+        return firstShard;
+    }
+
+    public long getDuplicatesDropped() {
+        return duplicatesDropped;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        String summary = String.format("%d games in %d shard(s), %.1f s",
+            gamesImported, shardCount, elapsedMillis / 1000.0);
+        return duplicatesDropped > 0 ? summary + ", " + duplicatesDropped + " duplicates dropped" : summary;
+    }
+}
@@ -0,0 +1,56 @@
+package com.orion.visualizer.service;
+
+/**
+ * Sorting of (first, second) long pairs held in two parallel arrays, ordered
+ * by first and then by second value.
+ */
+final class LongPairs {
+    private LongPairs() {
+    }
+
+    static int compare(long first1, long second1, long first2, long second2) {
+        int cmp = Long.compare(first1, first2);
+        return cmp != 0 ? cmp : Long.compare(second1, second2);
+    }
+
+    /**
+     * Sort the pairs from index from to index to, inclusive. Meant for hashes
+     * and fingerprints, which are uniformly distributed, so the middle element
+     * is a good enough pivot.
+     */
+    static void sort(long[] firsts, long[] seconds, int from, int to) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            long pivotFirst = firsts[mid];
+            long pivotSecond = seconds[mid];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (compare(firsts[i], seconds[i], pivotFirst, pivotSecond) < 0) {
+                    i++;
+                }
+                while (compare(firsts[j], seconds[j], pivotFirst, pivotSecond) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    long first = firsts[i];
+                    long second = seconds[i];
+                    firsts[i] = firsts[j];
+                    seconds[i] = seconds[j];
+                    firsts[j] = first;
+                    seconds[j] = second;
+                    i++;
+                    j--;
+                }
+            }
+            // Recurse into the smaller half, loop on the larger one
+            if (j - from < to - i) {
+                sort(firsts, seconds, from, j);
+                from = i;
+            } else {
+                sort(firsts, seconds, i, to);
+                to = j;
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.orion.visualizer.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service collecting runtime performance metrics (counters and gauges).
+ * Singleton pattern so that any component can record into the same registry.
+ */
+public class MetricsService {
+    private static MetricsService instance;
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+
+    private MetricsService() {
+    }
+
+    public static synchronized MetricsService getInstance() {
+        if (instance == null) {
+            instance = new MetricsService();
+        }
+        return instance;
+    }
+
+    /**
+     * Increment a counter by one.
+     */
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Add a delta to a counter.
+     */
+    public void add(String name, long delta) {
+        counters.computeIfAbsent(name, n -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * Set a gauge to the given value.
+     */
+    public void setGauge(String name, long value) {
+        gauges.computeIfAbsent(name, n -> new AtomicLong()).set(value);
+    }
+
+    /**
+     * Raise a gauge to the given value if it is larger than the current one.
+     */
+    public void updateMax(String name, long value) {
+        gauges.computeIfAbsent(name, n -> new AtomicLong()).accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Get the current value of a counter or gauge (0 if unknown).
+     */
+    public long get(String name) {
+        LongAdder counter = counters.get(name);
+        if (counter != null) {
+            return counter.sum();
+        }
+        AtomicLong gauge = gauges.get(name);
+        return gauge != null ? gauge.get() : 0;
+    }
+
+    /**
+     * Take a point-in-time snapshot of all metrics, sorted by name.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        counters.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> snapshot.put(name, gauge.get()));
+        return snapshot;
+    }
+
+    /**
+     * Format a snapshot as one "name = value" line per metric.
+     */
+    public String formatSnapshot() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : snapshot().entrySet()) {
+            sb.append(entry.getKey()).append(" = ").append(entry.getValue()).append('\n');
+        }
+        return sb.length() > 0 ? sb.toString() : "No metrics recorded";
+    }
+}
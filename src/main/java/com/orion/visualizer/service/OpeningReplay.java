@@ -0,0 +1,55 @@
+package com.orion.visualizer.service;
+
+import com.oriondb.model.Game;
+import com.oriondb.model.Move;
+import com.orion.visualizer.util.ChessNotation;
+import com.orion.visualizer.util.ZobristHasher;
+
+import java.util.Arrays;
+
+/**
+ * The opening plies of one game with the Zobrist hash of each position, as
+ * stored in the ply index and aggregated by the position index.
+ */
+class OpeningReplay {
+    static final long START_HASH = ZobristHasher.hash(ChessNotation.getStartingFen());
+
+    /** SAN of each ply. */
+    final String[] moves;
+    /** hashes[i] is the position after i plies; hashes[0] is the starting position. */
+    final long[] hashes;
+
+    OpeningReplay(String[] moves, long[] hashes) {
+        this.moves = moves;
+        this.hashes = hashes;
+    }
+
+    int plyCount() {
+        return moves.length;
+    }
+
+    /**
+     * Replay the first plies of a game, stopping at the first illegal or missing move.
+     */
+    static OpeningReplay of(Game game, int maxPlies) {
+        String[] moves = new String[maxPlies];
+        long[] hashes = new long[maxPlies + 1];
+        hashes[0] = START_HASH;
+        ChessEngineService engine = new ChessEngineService();
+        int ply = 0;
+
+        for (Move move : game.getMoves()) {
+            if (ply >= maxPlies) {
+                break;
+            }
+            String san = move.getSan();
+            if (san == null || san.isEmpty() || !engine.makeMove(san)) {
+                break;
+            }
+            moves[ply] = san;
+            hashes[ply + 1] = ZobristHasher.hash(engine.getFen());
+            ply++;
+        }
+        return new OpeningReplay(Arrays.copyOf(moves, ply), Arrays.copyOf(hashes, ply + 1));
+    }
+}
@@ -0,0 +1,430 @@
+package com.orion.visualizer.service;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches a folder for new or changed PGN files and appends them to the open
+ * database.
+ *
+ * A file is queued once it has not changed for a quiet period and its size is
+ * stable, so files still being copied are not imported half-written. Imports
+ * run on a bounded pool. Files are identified by the SHA-256 of their content,
+ * and the hashes of ingested files are kept in a list inside the watched
+ * folder, so renamed copies and restarts do not import anything twice.
+ *
+ * The list also records how many bytes of each file were ingested: up to
+ * the end of its last complete game. A last game whose movetext does not end
+ * with a result yet is left out, so a file saved mid-game does not get a
+ * truncated game imported. When a file grows and still starts with the
+ * content ingested before, only the bytes after it are appended, starting
+ * with any game left out; a file rewritten with other content is appended in
+ * full.
+ */
+public class PgnFolderWatcher {
+    public static final String INGESTED_LIST = ".orion-ingested";
+    private static final byte[] GAME_START = "\n[Event ".getBytes(StandardCharsets.US_ASCII);
+    private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2", "*"};
+    private static final long QUIET_PERIOD_MS = 2000;
+    private static final long SCAN_INTERVAL_MS = 1000;
+
+    private final Path folder;
+    private final DatabaseService databaseService;
+    private final IngestListener listener;
+    private final ExecutorService importExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final Map<Path, PendingFile> pending = new ConcurrentHashMap<>();
+    private final Set<String> ingestedHashes = new HashSet<>();
+    private final Set<String> inFlightHashes = new HashSet<>();
+    // Last ingest of each file name; guarded by ingestedHashes
+    private final Map<String, IngestedFile> ingestedFiles = new HashMap<>();
+    private final Set<Path> inFlightFiles = new HashSet<>();
+
+    private WatchService watchService;
+    private Thread watchThread;
+
+    /**
+     * Receives the outcome of each ingested file, on an import thread.
+     */
+    public interface IngestListener {
+        void onIngested(File pgnFile, ImportSummary summary);
+
+        void onError(File pgnFile, Exception error);
+    }
+
+    /**
+     * @param maxConcurrentImports Upper bound on imports running at once
+     */
+    public PgnFolderWatcher(File folder, DatabaseService databaseService, int maxConcurrentImports,
+                            IngestListener listener) {
+        this.folder = folder.toPath().toAbsolutePath();
+        this.databaseService = databaseService;
+        this.listener = listener;
+        int threads = Math.max(1, maxConcurrentImports);
+        this.importExecutor = Executors.newFixedThreadPool(threads, r -> daemon(r, "pgn-ingest"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "pgn-ingest-scheduler"));
+    }
+
+    /**
+     * Start watching. Files already in the folder are queued as well.
+     */
+    public void start() throws IOException {
+        loadIngestedList();
+        watchService = folder.getFileSystem().newWatchService();
+        folder.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+
+        try (DirectoryStream<Path> existing = Files.newDirectoryStream(folder, "*.pgn")) {
+            for (Path file : existing) {
+                touch(file);
+            }
+        }
+
+        watchThread = daemon(this::watchLoop, "pgn-folder-watcher");
+        watchThread.start();
+        scheduler.scheduleWithFixedDelay(this::queueSettledFiles,
+            SCAN_INTERVAL_MS, SCAN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop watching. Imports already running are allowed to finish.
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+        importExecutor.shutdown();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                System.err.println("Error closing folder watch: " + e.getMessage());
+            }
+        }
+    }
+
+    public File getFolder() {
+        return folder.toFile();
+    }
+
+    /**
+     * Collect file events until the watch service is closed.
+     */
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        // Events were lost; rescan the folder
+                        try (DirectoryStream<Path> all = Files.newDirectoryStream(folder, "*.pgn")) {
+                            all.forEach(this::touch);
+                        } catch (IOException e) {
+                            System.err.println("Error rescanning " + folder + ": " + e.getMessage());
+                        }
+                        continue;
+                    }
+                    Path file = folder.resolve((Path) event.context());
+                    if (file.getFileName().toString().toLowerCase().endsWith(".pgn")) {
+                        touch(file);
+                    }
+                }
+                if (!key.reset()) {
+                    System.err.println("Watched folder is no longer accessible: " + folder);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     * Record activity on a file, restarting its quiet period.
+     */
+    private void touch(Path file) {
+        pending.compute(file, (path, entry) -> {
+            PendingFile updated = entry != null ? entry : new PendingFile();
+            updated.lastEvent = System.currentTimeMillis();
+            return updated;
+        });
+    }
+
+    /**
+     * Queue files that have been quiet long enough and whose size stopped changing.
+     */
+    private void queueSettledFiles() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Path, PendingFile> entry : pending.entrySet()) {
+            Path file = entry.getKey();
+            PendingFile state = entry.getValue();
+            if (now - state.lastEvent < QUIET_PERIOD_MS) {
+                continue;
+            }
+
+            long size = file.toFile().length();
+            if (size == 0 || size != state.lastSize) {
+                // Still being written (or vanished); check again next scan
+                state.lastSize = size;
+                if (!Files.exists(file)) {
+                    pending.remove(file, state);
+                }
+                continue;
+            }
+
+            if (pending.remove(file, state)) {
+                importExecutor.execute(() -> ingest(file));
+            }
+        }
+    }
+
+    /**
+     * Import the complete games of one file unless they were already
+     * ingested. A file that grew since its last ingest is imported from where
+     * that ingest stopped.
+     */
+    private void ingest(Path file) {
+        String name = file.getFileName().toString();
+        IngestedFile previous;
+        synchronized (ingestedHashes) {
+            if (!inFlightFiles.add(file)) {
+                // Still importing an earlier version; look at it again once that is done
+                touch(file);
+                return;
+            }
+            previous = ingestedFiles.get(name);
+        }
+
+        try {
+            // A last game still being written is left for the next ingest, which starts at it
+            long end = completeGamesEnd(file, Files.size(file));
+            if (end == 0) {
+                return;
+            }
+            long prefixLength = previous != null && previous.length < end ? previous.length : -1;
+            String[] hashes = sha256(file, prefixLength, end);
+            String hash = hashes[1];
+            long start = prefixLength >= 0 && hashes[0].equals(previous.hash) ? prefixLength : 0;
+
+            synchronized (ingestedHashes) {
+                if (ingestedHashes.contains(hash) || !inFlightHashes.add(hash)) {
+                    return;
+                }
+            }
+            try {
+                if (!databaseService.isDatabaseLoaded()) {
+                    throw new IllegalStateException("No database loaded");
+                }
+                ImportSummary summary = databaseService.appendPgn(file.toFile(), start, end,
+                    (fraction, message) -> { });
+                recordIngested(hash, end, file);
+                listener.onIngested(file.toFile(), summary);
+            } finally {
+                synchronized (ingestedHashes) {
+                    inFlightHashes.remove(hash);
+                }
+            }
+        } catch (Exception e) {
+            listener.onError(file.toFile(), e);
+        } finally {
+            synchronized (ingestedHashes) {
+                inFlightFiles.remove(file);
+            }
+        }
+    }
+
+    /**
+     * Find where the completely written games of a file end: at its length,
+     * or at the start of its last game if that game's movetext does not end
+     * with a result.
+     */
+    private static long completeGamesEnd(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Read back from the end until the last game's header is found
+            for (long window = 1 << 16; ; window *= 2) {
+                long from = Math.max(0, size - window);
+                ByteBuffer buffer = ByteBuffer.allocate((int) (size - from));
+                while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) > 0) {
+                    // Keep reading
+                }
+                byte[] tail = buffer.array();
+                int length = buffer.position();
+                int gameStart = lastGameStart(tail, length);
+                if (gameStart >= 0 || from == 0) {
+                    gameStart = Math.max(gameStart, 0);
+                    String game = new String(tail, gameStart, length - gameStart, StandardCharsets.ISO_8859_1);
+                    return isCompleted(game) ? from + length : from + gameStart;
+                }
+            }
+        }
+    }
+
+    /**
+     * Offset of the '[' of the last "[Event " tag at the start of a line, or -1.
+     */
+    private static int lastGameStart(byte[] buffer, int length) {
+        outer:
+        for (int i = length - GAME_START.length; i >= 0; i--) {
+            for (int j = 0; j < GAME_START.length; j++) {
+                if (buffer[i + j] != GAME_START[j]) {
+                    continue outer;
+                }
+            }
+            return i + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Check whether the movetext of a game ends with a result, "*" included.
+     */
+    private static boolean isCompleted(String text) {
+        String trimmed = text.stripTrailing();
+        for (String result : RESULTS) {
+            if (trimmed.endsWith(result) && trimmed.length() > result.length()
+                    && Character.isWhitespace(trimmed.charAt(trimmed.length() - result.length() - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read the hashes of files ingested in earlier sessions.
+     */
+    private void loadIngestedList() throws IOException {
+        Path list = folder.resolve(INGESTED_LIST);
+        if (!Files.exists(list)) {
+            return;
+        }
+        synchronized (ingestedHashes) {
+            for (String line : Files.readAllLines(list, StandardCharsets.UTF_8)) {
+                String[] fields = line.split(" ", 3);
+                if (fields.length < 2) {
+                    continue;
+                }
+                ingestedHashes.add(fields[0]);
+                // Lines without a length are from before lengths were recorded
+                if (fields.length == 3 && fields[1].matches("\\d+")) {
+                    ingestedFiles.put(fields[2], new IngestedFile(fields[0], Long.parseLong(fields[1])));
+                }
+            }
+        }
+    }
+
+    /**
+     * Remember an ingested file as "hash length file-name" in the ingested
+     * list; later lines for the same name replace earlier ones.
+     */
+    private void recordIngested(String hash, long length, Path file) throws IOException {
+        String name = file.getFileName().toString();
+        synchronized (ingestedHashes) {
+            ingestedHashes.add(hash);
+            ingestedFiles.put(name, new IngestedFile(hash, length));
+            try (BufferedWriter writer = Files.newBufferedWriter(folder.resolve(INGESTED_LIST),
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(hash + " " + length + " " + name);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Hash the first length bytes of a file.
+     *
+     * @param prefixLength Length of a prefix to hash as well, or -1
+     * @return The prefix hash (null without a prefix) and the hash of all length bytes
+     */
+    private static String[] sha256(Path file, long prefixLength, long length) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        String prefixHash = null;
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(file)) {
+            long position = 0;
+            while (position < length) {
+                long limit = position < prefixLength ? prefixLength : length;
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, limit - position));
+                if (read == -1) {
+                    throw new IOException("File shrank while hashing: " + file);
+                }
+                digest.update(buffer, 0, read);
+                position += read;
+                if (position == prefixLength) {
+                    prefixHash = hex(digest, true);
+                }
+            }
+        }
+        return new String[] {prefixHash, hex(digest, false)};
+    }
+
+    /**
+     * Format the digest of the data so far, optionally leaving the digest usable.
+     */
+    private static String hex(MessageDigest digest, boolean keepGoing) {
+        try {
+            MessageDigest finished = keepGoing ? (MessageDigest) digest.clone() : digest;
+            return HexFormat.of().formatHex(finished.digest());
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Hash and length of the content of a file ingested last, which ends
+     * after its last complete game.
+     */
+    private static class IngestedFile {
+        private final String hash;
+        private final long length;
+
+        IngestedFile(String hash, long length) {
+            this.hash = hash;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Debounce state of a file with recent activity.
+     */
+    private static class PendingFile {
+        private volatile long lastEvent;
+        private volatile long lastSize = -1;
+    }
+}
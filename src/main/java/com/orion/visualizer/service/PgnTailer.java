@@ -0,0 +1,379 @@
+package com.orion.visualizer.service;
+
+import com.orion.visualizer.model.FilterCriteria;
+import com.orion.visualizer.model.GameReference;
+import com.orion.visualizer.model.LiveOpeningTreeNode;
+import com.orion.visualizer.model.PlayerSide;
+import com.orion.visualizer.util.ChessNotation;
+import com.orion.visualizer.util.DateUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Follows a PGN file that another program keeps appending to (e.g. a
+ * broadcast relay) and adds each newly completed game to a live tree.
+ *
+ * The file is polled every POLL_INTERVAL_MS and only the bytes added since the
+ * last poll are read. A game counts as completed once its movetext ends with a
+ * decisive or drawn result; games still in progress stay buffered until they
+ * do. Each poll compares a checksum of the file's first bytes and of the last
+ * bytes read with the previous poll's; if they differ, or the file shrank,
+ * the relay rewrote it and it is read again from the start. Games already
+ * added are recognized by their fingerprint and skipped. A game that cannot
+ * be added is reported and skipped.
+ *
+ * Live games are not in the database. Their references carry negative ids,
+ * counting down from -1 in the order they were added.
+ */
+public class PgnTailer {
+    private static final long POLL_INTERVAL_MS = 250;
+    /** Bytes at the start of the file and before the read position that are checked for a rewrite. */
+    private static final int CHECKED_BYTES = 4096;
+    private static final byte[] GAME_START = "[Event ".getBytes(StandardCharsets.ISO_8859_1);
+    private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2"};
+
+    private final File pgnFile;
+    private final FilterCriteria filters;
+    private final int maxPlies;
+    private final TailListener listener;
+    private final LiveOpeningTreeNode tree = new LiveOpeningTreeNode(ChessNotation.getStartingFen());
+    private final ScheduledExecutorService scheduler;
+    private final Set<GameFingerprint> addedGames = new HashSet<>();
+
+    // Only touched by the polling thread
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long offset;
+    private long checksum;
+    private int gamesAdded;
+
+    /**
+     * Receives the games added by each poll, on the polling thread.
+     */
+    public interface TailListener {
+        /**
+         * @param movePaths Move path of each added game, as far as it entered the tree
+         */
+        void onGamesAdded(List<List<String>> movePaths);
+
+        void onError(Exception error);
+    }
+
+    /**
+     * @param filters Games not matching these are skipped; without a player,
+     *                every game is added with White's results
+     * @param maxPlies Number of opening plies to add per game
+     */
+    public PgnTailer(File pgnFile, FilterCriteria filters, int maxPlies, TailListener listener) {
+        this.pgnFile = pgnFile;
+        this.filters = filters;
+        this.maxPlies = maxPlies;
+        this.listener = listener;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "pgn-tailer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start following the file. Games already in it are added first.
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::poll, 0, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop following the file. The tree keeps the games added so far.
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public File getFile() {
+        return pgnFile;
+    }
+
+    /**
+     * Get the live tree; it can be read while games are being added.
+     */
+    public LiveOpeningTreeNode getTree() {
+        return tree;
+    }
+
+    /**
+     * Read what was appended since the last poll and add the completed games.
+     */
+    private void poll() {
+        try {
+            List<List<String>> movePaths = new ArrayList<>();
+            try (RandomAccessFile file = new RandomAccessFile(pgnFile, "r")) {
+                long length = file.length();
+                if (length < offset || (offset > 0 && checksum(file, offset) != checksum)) {
+                    // Rewritten by the relay: read it again, skipping games already added
+                    offset = 0;
+                    pending.reset();
+                }
+                if (length == offset) {
+                    return;
+                }
+                byte[] appended = new byte[(int) Math.min(length - offset, Integer.MAX_VALUE - 8)];
+                file.seek(offset);
+                file.readFully(appended);
+                offset += appended.length;
+                pending.write(appended);
+                checksum = checksum(file, offset);
+            }
+
+            byte[] buffer = pending.toByteArray();
+            int consumed = 0;
+            int start = 0;
+            while (start < buffer.length) {
+                int next = nextGameStart(buffer, start + 1);
+                String text = new String(buffer, start, next - start, StandardCharsets.UTF_8);
+                boolean completed = isCompleted(text);
+                if (completed) {
+                    try {
+                        List<String> movePath = addGame(buffer, start, next - start, text);
+                        if (movePath != null) {
+                            movePaths.add(movePath);
+                        }
+                    } catch (RuntimeException e) {
+                        // Skip the malformed game rather than retrying it on every poll
+                        listener.onError(e);
+                    }
+                } else if (next == buffer.length) {
+                    // The last game may still be in progress; keep it for the next poll
+                    break;
+                }
+                // Unfinished games followed by another game are dropped
+                consumed = next;
+                start = next;
+            }
+
+            pending.reset();
+            pending.write(buffer, consumed, buffer.length - consumed);
+            if (!movePaths.isEmpty()) {
+                listener.onGamesAdded(movePaths);
+            }
+        } catch (IOException e) {
+            listener.onError(e);
+        } catch (RuntimeException e) {
+            // Keep polling after an unexpected failure
+            listener.onError(e);
+        }
+    }
+
+    /**
+     * Checksum the first CHECKED_BYTES bytes of the file and the CHECKED_BYTES
+     * bytes before a position.
+     */
+    private static long checksum(RandomAccessFile file, long end) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] bytes = new byte[(int) Math.min(end, CHECKED_BYTES)];
+        file.seek(0);
+        file.readFully(bytes);
+        crc.update(bytes);
+        file.seek(end - bytes.length);
+        file.readFully(bytes);
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    /**
+     * Find the start of the next game's header at or after a position.
+     *
+     * @return The position of the next "[Event " tag at the start of a line, or the buffer length
+     */
+    private static int nextGameStart(byte[] buffer, int from) {
+        outer:
+        for (int i = from; i <= buffer.length - GAME_START.length; i++) {
+            if (buffer[i - 1] != '\n') {
+                continue;
+            }
+            for (int j = 0; j < GAME_START.length; j++) {
+                if (buffer[i + j] != GAME_START[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return buffer.length;
+    }
+
+    /**
+     * Check whether the movetext of a game ends with a decisive or drawn result.
+     */
+    private static boolean isCompleted(String text) {
+        String trimmed = text.stripTrailing();
+        for (String result : RESULTS) {
+            if (trimmed.endsWith(result) && trimmed.length() > result.length()
+                    && Character.isWhitespace(trimmed.charAt(trimmed.length() - result.length() - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replay a completed game into the tree if it matches the filters and was
+     * not added before.
+     *
+     * @return The moves the game added, or null if it was skipped
+     */
+    private List<String> addGame(byte[] buffer, int start, int length, String text) {
+        GameFingerprint fingerprint = GameFingerprint.of(buffer, start, length);
+        if (fingerprint == null || !addedGames.add(fingerprint)) {
+            return null;
+        }
+
+        String white = tag(text, "White");
+        String black = tag(text, "Black");
+        String result = tag(text, "Result");
+        String date = tag(text, "Date");
+        String event = tag(text, "Event");
+
+        PlayerSide side = PlayerSide.WHITE;
+        String opponent = null;
+        if (!filters.isExplorer()) {
+            String playerName = filters.getPlayerName().toLowerCase();
+            if (white.toLowerCase().contains(playerName)) {
+                side = PlayerSide.WHITE;
+                opponent = black;
+            } else if (black.toLowerCase().contains(playerName)) {
+                side = PlayerSide.BLACK;
+                opponent = white;
+            } else {
+                return null;
+            }
+        }
+        if (!filters.isDateInRange(DateUtils.parsePgnDate(date))) {
+            return null;
+        }
+        if (filters.getOpponent() != null && !filters.getOpponent().isEmpty()
+                && !filters.matchesOpponent(opponent)) {
+            return null;
+        }
+
+        GameReference gameRef = new GameReference(-(++gamesAdded), white, black, result,
+            DateUtils.parsePgnDate(date), event, side);
+
+        // Replay the main line up to maxPlies, stopping at the first illegal move
+        ChessEngineService engine = new ChessEngineService();
+        List<String> movePath = new ArrayList<>();
+        LiveOpeningTreeNode node = tree;
+        for (String san : mainLine(text)) {
+            if (movePath.size() >= maxPlies || !engine.makeMove(san)) {
+                break;
+            }
+            node = node.getOrCreateChild(san, engine.getFen(), engine.getMoveNumber());
+            node.addGame(gameRef);
+            movePath.add(san);
+        }
+        return movePath;
+    }
+
+    /**
+     * Get the value of a header tag, or an empty string.
+     */
+    private static String tag(String text, String name) {
+        String prefix = "[" + name + " \"";
+        int pos = text.indexOf(prefix);
+        if (pos < 0) {
+            return "";
+        }
+        int valueStart = pos + prefix.length();
+        int valueEnd = text.indexOf('"', valueStart);
+        return valueEnd < 0 ? "" : text.substring(valueStart, valueEnd);
+    }
+
+    /**
+     * Get the main-line SAN moves of a game, skipping header tags, comments,
+     * variations, NAGs, move numbers and annotation suffixes.
+     */
+    private static List<String> mainLine(String text) {
+        List<String> moves = new ArrayList<>();
+        int pos = 0;
+        int depth = 0;
+        int textLength = text.length();
+        while (pos < textLength) {
+            char c = text.charAt(pos);
+            if (c == '[') {
+                int end = text.indexOf(']', pos);
+                pos = end < 0 ? textLength : end + 1;
+            } else if (c == '{') {
+                int end = text.indexOf('}', pos);
+                pos = end < 0 ? textLength : end + 1;
+            } else if (c == ';') {
+                int end = text.indexOf('\n', pos);
+                pos = end < 0 ? textLength : end + 1;
+            } else if (c == '(') {
+                depth++;
+                pos++;
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+                pos++;
+            } else if (Character.isWhitespace(c)) {
+                pos++;
+            } else {
+                int end = pos;
+                while (end < textLength && !GameFingerprint.isTokenEnd(text.charAt(end))) {
+                    end++;
+                }
+                if (depth == 0) {
+                    String san = toSan(text.substring(pos, end));
+                    if (san != null) {
+                        moves.add(san);
+                    }
+                }
+                pos = end;
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Strip the move number and annotation suffixes from a movetext token,
+     * keeping check and mate signs as in the database's SAN.
+     *
+     * @return The SAN move, or null for tokens that are not moves
+     */
+    private static String toSan(String token) {
+        if (token.startsWith("$") || token.equals("*")) {
+            return null;
+        }
+        for (String result : RESULTS) {
+            if (token.equals(result)) {
+                return null;
+            }
+        }
+        // "12." and "12...e5" style move numbers
+        int start = 0;
+        while (start < token.length() && Character.isDigit(token.charAt(start))) {
+            start++;
+        }
+        if (start > 0 && start < token.length() && token.charAt(start) == '.') {
+            while (start < token.length() && token.charAt(start) == '.') {
+                start++;
+            }
+        } else {
+            start = 0;
+        }
+        int end = token.length();
+        while (end > start && "!?".indexOf(token.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return end > start ? token.substring(start, end) : null;
+    }
+}
@@ -0,0 +1,330 @@
+package com.orion.visualizer.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memory-mapped forward index from game id to the game's opening plies: for
+ * each ply, the move (as a code into a SAN dictionary) and the Zobrist hash of
+ * the position after it.
+ *
+ * The positions a game goes through never change, so the moves are parsed and
+ * checked once, when the index is built; tree builds then walk the stored move
+ * codes instead of replaying SAN. Layout: a header (including the length and
+ * modification time of the shard file it was built from), the SAN dictionary,
+ * a table of (game id, ply count, record offset) sorted by id, and the records,
+ * each holding the move codes (2 bytes per ply) followed by the hashes (8 bytes
+ * per ply).
+ *
+ * Each shard of a database has its own index, holding database-wide game ids;
+ * ShardedPlyIndex reads them as one.
+ */
+public class PlyIndex {
+    public static final String EXTENSION = ".plyidx";
+    private static final int MAGIC = 0x4F504C59; // "OPLY"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 48;
+    private static final int TABLE_ENTRY_BYTES = 16;
+    private static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final int indexedGameCount;
+    private final int maxPlies;
+    private final String[] dictionary;
+    private final int tableOffset;
+    private final long sourceLength;
+    private final long sourceModified;
+
+    private PlyIndex(File file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a ply index: " + file);
+        }
+        this.indexedGameCount = buffer.getInt(8);
+        this.maxPlies = buffer.getInt(12);
+        this.dictionary = new String[buffer.getInt(16)];
+        this.tableOffset = (int) buffer.getLong(24);
+        this.sourceLength = buffer.getLong(32);
+        this.sourceModified = buffer.getLong(40);
+        if (tableOffset + (long) indexedGameCount * TABLE_ENTRY_BYTES > buffer.capacity()) {
+            throw new IOException("Truncated ply index: " + file);
+        }
+
+        // Decode the dictionary once; moves are then shared String instances
+        int pos = HEADER_BYTES;
+        for (int i = 0; i < dictionary.length; i++) {
+            byte[] san = new byte[buffer.get(pos++) & 0xFF];
+            buffer.get(pos, san);
+            pos += san.length;
+            dictionary[i] = new String(san, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Get the index file belonging to a database file or shard manifest.
+     */
+    public static File indexFileFor(File databaseFile) {
+        String name = databaseFile.getName().replaceFirst("\\.(oriondb|orionshards)$", "");
+        return new File(databaseFile.getAbsoluteFile().getParentFile(), name + EXTENSION);
+    }
+
+    /**
+     * Map an index file into memory.
+     */
+    public static PlyIndex open(File indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Ply index too large to map: " + indexFile);
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new PlyIndex(indexFile, mapped);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Number of games the index was built from; an index whose count differs
+     * from the database's is stale.
+     */
+    public int getIndexedGameCount() {
+        return indexedGameCount;
+    }
+
+    public int getMaxPlies() {
+        return maxPlies;
+    }
+
+    /**
+     * Check whether the index was built from a shard file as it is now. A
+     * file re-imported to the same path has another length or modification
+     * time, even when it holds as many games.
+     */
+    public boolean isBuiltFrom(File shardFile) {
+        return shardFile.length() == sourceLength && shardFile.lastModified() == sourceModified;
+    }
+
+    /**
+     * Find the slot of a game.
+     *
+     * @return The slot, or -1 if the game is not indexed
+     */
+    public int find(int gameId) {
+        int low = 0;
+        int high = indexedGameCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = buffer.getInt(tableOffset + mid * TABLE_ENTRY_BYTES);
+            if (id < gameId) {
+                low = mid + 1;
+            } else if (id > gameId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Number of legal plies stored for the game in a slot.
+     */
+    public int getPlyCount(int slot) {
+        return buffer.getInt(tableOffset + slot * TABLE_ENTRY_BYTES + 4);
+    }
+
+    /**
+     * SAN of a ply (0 = White's first move).
+     */
+    public String getMove(int slot, int ply) {
+        return dictionary[buffer.getChar(recordOffset(slot) + ply * 2)];
+    }
+
+    /**
+     * Zobrist hash of the position after a ply.
+     */
+    public long getPositionHash(int slot, int ply) {
+        int offset = recordOffset(slot);
+        return buffer.getLong(offset + getPlyCount(slot) * 2 + ply * 8);
+    }
+
+    /**
+     * Read back the stored opening of a slot.
+     */
+    OpeningReplay replayOf(int slot) {
+        int plies = getPlyCount(slot);
+        String[] moves = new String[plies];
+        long[] hashes = new long[plies + 1];
+        hashes[0] = OpeningReplay.START_HASH;
+        for (int ply = 0; ply < plies; ply++) {
+            moves[ply] = getMove(slot, ply);
+            hashes[ply + 1] = getPositionHash(slot, ply);
+        }
+        return new OpeningReplay(moves, hashes);
+    }
+
+    private int recordOffset(int slot) {
+        return (int) buffer.getLong(tableOffset + slot * TABLE_ENTRY_BYTES + 8);
+    }
+
+    /**
+     * Writes the records to a scratch file as games are added, then assembles
+     * the index file. Only the game table and dictionary are kept in memory.
+     */
+    public static class Builder implements Closeable {
+        private final File indexFile;
+        private final File recordsFile;
+        private final int maxPlies;
+        private final long sourceLength;
+        private final long sourceModified;
+        private final DataOutputStream records;
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private int[] ids = new int[1024];
+        private int[] plyCounts = new int[1024];
+        private long[] offsets = new long[1024];
+        private int gameCount;
+        private long recordsSize;
+
+        /**
+         * @param shardFile Shard file the games are read from
+         */
+        public Builder(File indexFile, File shardFile, int maxPlies) throws IOException {
+            this.indexFile = indexFile;
+            this.recordsFile = new File(indexFile.getPath() + ".records.tmp");
+            this.maxPlies = maxPlies;
+            this.sourceLength = shardFile.length();
+            this.sourceModified = shardFile.lastModified();
+            this.records = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(recordsFile), 1 << 16));
+        }
+
+        /**
+         * Store the replayed opening of a game.
+         */
+        void addGame(OpeningReplay replay, int gameId) throws IOException {
+            int plies = Math.min(replay.plyCount(), maxPlies);
+            if (gameCount == ids.length) {
+                ids = Arrays.copyOf(ids, gameCount * 2);
+                plyCounts = Arrays.copyOf(plyCounts, gameCount * 2);
+                offsets = Arrays.copyOf(offsets, gameCount * 2);
+            }
+            ids[gameCount] = gameId;
+            plyCounts[gameCount] = plies;
+            offsets[gameCount] = recordsSize;
+            gameCount++;
+
+            for (int ply = 0; ply < plies; ply++) {
+                records.writeChar(code(replay.moves[ply]));
+            }
+            for (int ply = 0; ply < plies; ply++) {
+                records.writeLong(replay.hashes[ply + 1]);
+            }
+            recordsSize += plies * 10L;
+        }
+
+        public int getGameCount() {
+            return gameCount;
+        }
+
+        /**
+         * Write the index file, replacing it atomically.
+         */
+        public void write() throws IOException {
+            records.close();
+
+            // Game table in id order
+            long[] order = new long[gameCount];
+            for (int i = 0; i < gameCount; i++) {
+                order[i] = ((long) ids[i] << 32) | i;
+            }
+            Arrays.sort(order);
+
+            byte[][] sans = new byte[dictionary.size()][];
+            long dictionaryBytes = 0;
+            for (int i = 0; i < sans.length; i++) {
+                sans[i] = dictionary.get(i).getBytes(StandardCharsets.UTF_8);
+                dictionaryBytes += 1 + sans[i].length;
+            }
+            long tableOffset = HEADER_BYTES + dictionaryBytes;
+            long recordsOffset = tableOffset + (long) gameCount * TABLE_ENTRY_BYTES;
+
+            File temp = new File(indexFile.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(gameCount);
+                out.writeInt(maxPlies);
+                out.writeInt(sans.length);
+                out.writeInt(0);
+                out.writeLong(tableOffset);
+                out.writeLong(sourceLength);
+                out.writeLong(sourceModified);
+                for (byte[] san : sans) {
+                    out.writeByte(san.length);
+                    out.write(san);
+                }
+                for (long entry : order) {
+                    int i = (int) entry;
+                    out.writeInt(ids[i]);
+                    out.writeInt(plyCounts[i]);
+                    out.writeLong(recordsOffset + offsets[i]);
+                }
+                try (InputStream in = new BufferedInputStream(new FileInputStream(recordsFile))) {
+                    in.transferTo(out);
+                }
+            } finally {
+                recordsFile.delete();
+            }
+            Files.move(temp.toPath(), indexFile.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Discard the scratch records of an unfinished build.
+         */
+        @Override
+        public void close() throws IOException {
+            records.close();
+            recordsFile.delete();
+        }
+
+        private char code(String san) throws IOException {
+            Integer code = codes.get(san);
+            if (code == null) {
+                if (dictionary.size() == MAX_DICTIONARY_SIZE || san.length() > 255) {
+                    throw new IOException("Cannot encode move " + san);
+                }
+                code = dictionary.size();
+                dictionary.add(san);
+                codes.put(san, code);
+            }
+            return (char) (int) code;
+        }
+    }
+}
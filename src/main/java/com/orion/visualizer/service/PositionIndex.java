@@ -0,0 +1,533 @@
+package com.orion.visualizer.service;
+
+import com.oriondb.model.Game;
+import com.orion.visualizer.model.PositionStats;
+import com.orion.visualizer.util.ZobristHasher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Memory-mapped side-file mapping the Zobrist hash of every position in the
+ * opening plies to next-move statistics and the ids of the games reaching it.
+ * Each shard of a database has its own index; ShardedPositionIndex looks
+ * them up as one.
+ *
+ * Layout: a header (magic, version, indexed game count, entry count, and the
+ * length and modification time of the shard file it was built from), a table
+ * of (hash, record offset) pairs sorted by hash, and the records. A record
+ * holds the next moves with their White wins, draws and Black wins, followed by
+ * the ascending game ids, delta-encoded as varints. A lookup is a binary search
+ * in the table and the decoding of one record.
+ */
+public class PositionIndex {
+    public static final String EXTENSION = ".posidx";
+    private static final int MAGIC = 0x4F504958; // "OPIX"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+    private static final int TABLE_ENTRY_BYTES = 16;
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final int indexedGameCount;
+    private final int entryCount;
+    private final long sourceLength;
+    private final long sourceModified;
+
+    private PositionIndex(File file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a position index: " + file);
+        }
+        this.indexedGameCount = buffer.getInt(8);
+        this.entryCount = buffer.getInt(12);
+        this.sourceLength = buffer.getLong(16);
+        this.sourceModified = buffer.getLong(24);
+        if (HEADER_BYTES + (long) entryCount * TABLE_ENTRY_BYTES > buffer.capacity()) {
+            throw new IOException("Truncated position index: " + file);
+        }
+    }
+
+    /**
+     * Get the index file belonging to a database file or shard manifest.
+     */
+    public static File indexFileFor(File databaseFile) {
+        String name = databaseFile.getName().replaceFirst("\\.(oriondb|orionshards)$", "");
+        return new File(databaseFile.getAbsoluteFile().getParentFile(), name + EXTENSION);
+    }
+
+    /**
+     * Map an index file into memory.
+     */
+    public static PositionIndex open(File indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Position index too large to map: " + indexFile);
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new PositionIndex(indexFile, mapped);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Number of games the index was built from; an index whose count differs
+     * from the database's is stale.
+     */
+    public int getIndexedGameCount() {
+        return indexedGameCount;
+    }
+
+    public int getPositionCount() {
+        return entryCount;
+    }
+
+    /**
+     * Check whether the index was built from a shard file as it is now. A
+     * file re-imported to the same path has another length or modification
+     * time, even when it holds as many games.
+     */
+    public boolean isBuiltFrom(File shardFile) {
+        return shardFile.length() == sourceLength && shardFile.lastModified() == sourceModified;
+    }
+
+    /**
+     * Look up the position of a FEN string.
+     */
+    public PositionStats lookup(String fen) {
+        return lookup(ZobristHasher.hash(fen));
+    }
+
+    /**
+     * Look up a position by its Zobrist hash.
+     *
+     * @return The position's statistics; empty if no indexed game reached it
+     */
+    public PositionStats lookup(long hash) {
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = HEADER_BYTES + mid * TABLE_ENTRY_BYTES;
+            int cmp = Long.compare(buffer.getLong(entry), hash);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return readRecord(hash, (int) buffer.getLong(entry + 8));
+            }
+        }
+        return new PositionStats(hash, List.of(), new int[0]);
+    }
+
+    /**
+     * Decode the record at an offset. Only absolute reads are used, so lookups
+     * may run concurrently.
+     */
+    private PositionStats readRecord(long hash, int offset) {
+        int[] pos = {offset};
+        int moveCount = readVarint(pos);
+        List<PositionStats.MoveStats> moves = new ArrayList<>(moveCount);
+        for (int i = 0; i < moveCount; i++) {
+            byte[] san = new byte[readVarint(pos)];
+            for (int j = 0; j < san.length; j++) {
+                san[j] = buffer.get(pos[0]++);
+            }
+            moves.add(new PositionStats.MoveStats(new String(san, StandardCharsets.UTF_8),
+                readVarint(pos), readVarint(pos), readVarint(pos)));
+        }
+
+        int[] gameIds = new int[readVarint(pos)];
+        int id = 0;
+        for (int i = 0; i < gameIds.length; i++) {
+            id += readVarint(pos);
+            gameIds[i] = id;
+        }
+        return new PositionStats(hash, moves, gameIds);
+    }
+
+    private int readVarint(int[] pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(pos[0]++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Collects the positions of games and writes the index file.
+     *
+     * Every position a game reaches becomes a (hash, game, move, result)
+     * tuple. Tuples are buffered up to RUN_TUPLES, sorted and written to a
+     * scratch run file; write() merges the runs position by position, so the
+     * memory used does not grow with the number of games.
+     */
+    public static class Builder implements Closeable {
+        private static final int RUN_TUPLES = 1 << 21;
+        private static final int NO_MOVE = 0xFFFF;
+
+        private final File indexFile;
+        private final int maxPlies;
+        private final long sourceLength;
+        private final long sourceModified;
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private final List<File> runs = new ArrayList<>();
+        private final long[] hashes = new long[RUN_TUPLES];
+        // Game id << 32 | move code << 8 | result index + 1 (0 if unknown)
+        private final long[] tuples = new long[RUN_TUPLES];
+        private int buffered;
+        private int gameCount;
+
+        /**
+         * @param shardFile Shard file the games are read from
+         * @param maxPlies Number of opening plies to index per game
+         */
+        public Builder(File indexFile, File shardFile, int maxPlies) {
+            this.indexFile = indexFile;
+            this.maxPlies = maxPlies;
+            this.sourceLength = shardFile.length();
+            this.sourceModified = shardFile.lastModified();
+        }
+
+        /**
+         * Replay the opening of a game and record every position it reaches.
+         */
+        public void addGame(Game game, int gameId) throws IOException {
+            addGame(OpeningReplay.of(game, maxPlies), game.getResult(), gameId);
+        }
+
+        /**
+         * Record every position of an already replayed opening.
+         */
+        void addGame(OpeningReplay replay, String gameResult, int gameId) throws IOException {
+            gameCount++;
+            int result = resultIndex(gameResult) + 1;
+            int plies = Math.min(replay.plyCount(), maxPlies);
+            for (int ply = 0; ply < plies; ply++) {
+                add(replay.hashes[ply], gameId, code(replay.moves[ply]), result);
+            }
+            add(replay.hashes[plies], gameId, NO_MOVE, 0);
+        }
+
+        public int getGameCount() {
+            return gameCount;
+        }
+
+        private void add(long hash, int gameId, int move, int result) throws IOException {
+            if (buffered == RUN_TUPLES) {
+                spill();
+            }
+            hashes[buffered] = hash;
+            tuples[buffered] = ((long) gameId << 32) | (move << 8) | result;
+            buffered++;
+        }
+
+        /**
+         * Sort the buffered tuples and write them to a new run file.
+         */
+        private void spill() throws IOException {
+            LongPairs.sort(hashes, tuples, 0, buffered - 1);
+            File run = new File(indexFile.getPath() + ".run" + runs.size() + ".tmp");
+            runs.add(run);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(run), 1 << 16))) {
+                for (int i = 0; i < buffered; i++) {
+                    out.writeLong(hashes[i]);
+                    out.writeLong(tuples[i]);
+                }
+            }
+            buffered = 0;
+        }
+
+        /**
+         * Write the index file, replacing it atomically.
+         */
+        public void write() throws IOException {
+            if (buffered > 0) {
+                spill();
+            }
+            File tableFile = new File(indexFile.getPath() + ".table.tmp");
+            File recordsFile = new File(indexFile.getPath() + ".records.tmp");
+            int entryCount = 0;
+            long recordsSize = 0;
+
+            PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                (a, b) -> LongPairs.compare(a.hash, a.tuple, b.hash, b.tuple));
+            try (DataOutputStream table = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(tableFile), 1 << 16));
+                 OutputStream records = new BufferedOutputStream(new FileOutputStream(recordsFile), 1 << 16)) {
+                for (File run : runs) {
+                    RunReader reader = new RunReader(run);
+                    if (reader.next()) {
+                        queue.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                }
+
+                // Runs are sorted by hash, so each position's tuples arrive together
+                ByteArrayOutputStream record = new ByteArrayOutputStream();
+                Entry entry = null;
+                long entryHash = 0;
+                while (!queue.isEmpty()) {
+                    RunReader reader = queue.poll();
+                    if (entry == null || reader.hash != entryHash) {
+                        if (entry != null) {
+                            table.writeLong(entryHash);
+                            table.writeLong(recordsSize);
+                            record.reset();
+                            entry.writeTo(record);
+                            record.writeTo(records);
+                            recordsSize += record.size();
+                            entryCount++;
+                        }
+                        entry = new Entry();
+                        entryHash = reader.hash;
+                    }
+                    entry.addGame((int) (reader.tuple >>> 32));
+                    int move = (int) (reader.tuple >>> 8) & 0xFFFF;
+                    if (move != NO_MOVE) {
+                        entry.addMove(dictionary.get(move), (int) (reader.tuple & 0xFF) - 1);
+                    }
+
+                    if (reader.next()) {
+                        queue.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                }
+                if (entry != null) {
+                    table.writeLong(entryHash);
+                    table.writeLong(recordsSize);
+                    record.reset();
+                    entry.writeTo(record);
+                    record.writeTo(records);
+                    entryCount++;
+                }
+            } finally {
+                for (RunReader reader : queue) {
+                    reader.close();
+                }
+                deleteRuns();
+            }
+
+            long dataStart = HEADER_BYTES + (long) entryCount * TABLE_ENTRY_BYTES;
+            File temp = new File(indexFile.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(gameCount);
+                out.writeInt(entryCount);
+                out.writeLong(sourceLength);
+                out.writeLong(sourceModified);
+                try (DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(tableFile), 1 << 16))) {
+                    for (int i = 0; i < entryCount; i++) {
+                        out.writeLong(in.readLong());
+                        out.writeLong(dataStart + in.readLong());
+                    }
+                }
+                try (InputStream in = new BufferedInputStream(new FileInputStream(recordsFile))) {
+                    in.transferTo(out);
+                }
+            } finally {
+                tableFile.delete();
+                recordsFile.delete();
+            }
+            Files.move(temp.toPath(), indexFile.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Discard the scratch runs of an unfinished build.
+         */
+        @Override
+        public void close() {
+            deleteRuns();
+        }
+
+        private void deleteRuns() {
+            runs.forEach(File::delete);
+            runs.clear();
+        }
+
+        private int code(String san) throws IOException {
+            Integer code = codes.get(san);
+            if (code == null) {
+                if (dictionary.size() == NO_MOVE) {
+                    throw new IOException("Too many distinct moves to index: " + san);
+                }
+                code = dictionary.size();
+                dictionary.add(san);
+                codes.put(san, code);
+            }
+            return code;
+        }
+
+        /**
+         * 0 for a White win, 1 for a draw, 2 for a Black win, -1 otherwise.
+         */
+        private static int resultIndex(String result) {
+            if ("1-0".equals(result)) {
+                return 0;
+            } else if ("1/2-1/2".equals(result)) {
+                return 1;
+            } else if ("0-1".equals(result)) {
+                return 2;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the sorted tuples of one run file.
+     */
+    private static class RunReader implements Closeable {
+        private final DataInputStream in;
+        private long remaining;
+        private long hash;
+        private long tuple;
+
+        RunReader(File run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 1 << 16));
+            this.remaining = run.length() / 16;
+        }
+
+        /**
+         * Advance to the next tuple.
+         *
+         * @return false at the end of the run
+         */
+        boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            hash = in.readLong();
+            tuple = in.readLong();
+            return true;
+        }
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                System.err.println("Error closing index run: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Statistics of one position while building.
+     */
+    private static class Entry {
+        private String[] moves = new String[1];
+        private int[] results = new int[3];
+        private int moveCount;
+        private int[] gameIds = new int[2];
+        private int gameIdCount;
+
+        void addGame(int gameId) {
+            // A game repeating the position is listed once
+            if (gameIdCount > 0 && gameIds[gameIdCount - 1] == gameId) {
+                return;
+            }
+            if (gameIdCount == gameIds.length) {
+                gameIds = Arrays.copyOf(gameIds, gameIds.length * 2);
+            }
+            gameIds[gameIdCount++] = gameId;
+        }
+
+        void addMove(String san, int result) {
+            int index = 0;
+            while (index < moveCount && !moves[index].equals(san)) {
+                index++;
+            }
+            if (index == moveCount) {
+                if (moveCount == moves.length) {
+                    moves = Arrays.copyOf(moves, moves.length * 2);
+                    results = Arrays.copyOf(results, results.length * 2);
+                }
+                moves[moveCount++] = san;
+            }
+            if (result >= 0) {
+                results[index * 3 + result]++;
+            }
+        }
+
+        void writeTo(ByteArrayOutputStream out) {
+            // Most played moves first
+            Integer[] order = new Integer[moveCount];
+            for (int i = 0; i < moveCount; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(total(b), total(a)));
+
+            writeVarint(out, moveCount);
+            for (int i : order) {
+                byte[] san = moves[i].getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, san.length);
+                out.write(san, 0, san.length);
+                writeVarint(out, results[i * 3]);
+                writeVarint(out, results[i * 3 + 1]);
+                writeVarint(out, results[i * 3 + 2]);
+            }
+
+            Arrays.sort(gameIds, 0, gameIdCount);
+            writeVarint(out, gameIdCount);
+            int previous = 0;
+            for (int i = 0; i < gameIdCount; i++) {
+                writeVarint(out, gameIds[i] - previous);
+                previous = gameIds[i];
+            }
+        }
+
+        private int total(int move) {
+            return results[move * 3] + results[move * 3 + 1] + results[move * 3 + 2];
+        }
+
+        private static void writeVarint(ByteArrayOutputStream out, int value) {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+    }
+}
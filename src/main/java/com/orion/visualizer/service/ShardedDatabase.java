@@ -0,0 +1,602 @@
+package com.orion.visualizer.service;
+
+import com.oriondb.core.OrionDatabase;
+import com.oriondb.model.Game;
+import com.oriondb.util.ProgressCallback;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A database made of one or more OrionDB files queried as one.
+ *
+ * A sharded database is described by a small manifest (Properties format,
+ * extension .orionshards) listing the shard files, their game counts and the
+ * offset added to each shard's game ids. OrionDB numbers games per file, so the
+ * offsets keep ids unique across shards: shard i starts right after the
+ * highest id shard i-1 can use. A plain .oriondb file opens as a single shard
+ * with offset 0, so its ids are unchanged.
+ *
+ * Queries fan out to all shards in parallel and return a ShardedGameList with
+ * the results in shard order.
+ */
+public class ShardedDatabase implements Closeable {
+    public static final String MANIFEST_EXTENSION = ".orionshards";
+    private static final byte[] GAME_START = "\n[Event ".getBytes(StandardCharsets.US_ASCII);
+
+    private final File manifestFile;
+    private final List<File> shardFiles;
+    private final List<OrionDatabase> shards;
+    private final int[] idBases;
+
+    private ShardedDatabase(File manifestFile, List<File> shardFiles, List<OrionDatabase> shards,
+                            int[] idBases) {
+        this.manifestFile = manifestFile;
+        this.shardFiles = shardFiles;
+        this.shards = shards;
+        this.idBases = idBases;
+    }
+
+    /**
+     * Check whether a file is a shard manifest.
+     */
+    public static boolean isManifest(File file) {
+        return file.getName().endsWith(MANIFEST_EXTENSION);
+    }
+
+    /**
+     * Open a shard manifest or a single OrionDB file.
+     */
+    public static ShardedDatabase open(File file) throws IOException, ClassNotFoundException {
+        if (!isManifest(file)) {
+            OrionDatabase database = OrionDatabase.load(file);
+            return new ShardedDatabase(null, List.of(file), List.of(database), new int[] {0});
+        }
+
+        Manifest manifest = Manifest.read(file);
+        List<OrionDatabase> shards = new ArrayList<>();
+        try {
+            for (File shardFile : manifest.files) {
+                shards.add(OrionDatabase.load(shardFile));
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            closeAll(shards);
+            throw e;
+        }
+        return new ShardedDatabase(file, manifest.files, shards, manifest.idBasesArray());
+    }
+
+    /**
+     * Import a PGN file as a sharded database.
+     * The file is split at game boundaries into contiguous byte ranges of about
+     * equal size, each range is imported into its own OrionDB file in parallel,
+     * and the manifest is written last, followed by the fingerprints of the
+     * imported games.
+     *
+     * @param shardCount Requested number of shards (fewer for small files)
+     */
+    public static ImportSummary importFromPgn(File pgnFile, File manifestFile, int shardCount,
+                                              ImportProgressListener listener) throws IOException {
+        long startTime = System.currentTimeMillis();
+        long[] splitPoints = findSplitPoints(pgnFile, Math.max(1, shardCount));
+        int shards = splitPoints.length - 1;
+        GameDeduplicator deduplicator = GameDeduplicator.forPgn(pgnFile);
+        File fingerprintFile = GameDeduplicator.fileFor(manifestFile);
+        fingerprintFile.delete();
+
+        List<File> shardFiles = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            shardFiles.add(shardFile(manifestFile, i));
+        }
+
+        int[] games = importShards(pgnFile, splitPoints, shardFiles, deduplicator, listener);
+
+        Manifest manifest = new Manifest(manifestFile);
+        for (int i = 0; i < shards; i++) {
+            manifest.add(shardFiles.get(i), games[i]);
+        }
+        manifest.write();
+        deduplicator.save(fingerprintFile);
+
+        int total = 0;
+        for (int count : games) {
+            total += count;
+        }
+        return new ImportSummary(total, shards, 0, deduplicator.getDuplicatesDropped(),
+            System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Get the manifest this database is (or, for a single file, would be) described by.
+     */
+    private Manifest currentManifest() throws IOException {
+        if (manifestFile != null) {
+            return Manifest.read(manifestFile);
+        }
+        // A single file becomes shard 0 of a manifest next to it, keeping its game ids
+        File single = shardFiles.get(0);
+        String name = single.getName().replaceFirst("\\.oriondb$", "");
+        Manifest manifest = new Manifest(new File(single.getAbsoluteFile().getParentFile(), name + MANIFEST_EXTENSION));
+        manifest.add(single, shards.get(0).getGameCount());
+        return manifest;
+    }
+
+    /**
+     * Choose the file for a new shard: the first unused shard name that is not
+     * in the given set of names already handed out for imports in progress.
+     */
+    public File nextShardFile(Set<File> reserved) throws IOException {
+        File manifest = currentManifest().file;
+        int index = shardFiles.size();
+        File shardFile = shardFile(manifest, index);
+        while (shardFile.exists() || reserved.contains(shardFile)) {
+            shardFile = shardFile(manifest, ++index);
+        }
+        return shardFile;
+    }
+
+    /**
+     * Import a byte range of a PGN file into a new shard file. Does not touch
+     * this database, so several appends can import at the same time.
+     *
+     * @param start Offset of the first game to import
+     * @param end Offset past the last game to import
+     * @param deduplicator Records the imported games; games already recorded are dropped
+     * @return Number of games imported
+     */
+    public static int importShardFile(File pgnFile, long start, long end, File shardFile,
+                                      GameDeduplicator deduplicator, ImportProgressListener listener)
+            throws IOException {
+        return importShards(pgnFile, new long[] {start, end}, List.of(shardFile), deduplicator, listener)[0];
+    }
+
+    /**
+     * Return a database that also contains an imported shard, and record the
+     * shard in the manifest. A single-file database is converted to a manifest.
+     * Existing shards are shared, not reopened, so this instance must no longer
+     * be closed or used afterwards.
+     */
+    public ShardedDatabase withShard(File shardFile, int games) throws IOException, ClassNotFoundException {
+        Manifest manifest = currentManifest();
+        OrionDatabase added = OrionDatabase.load(shardFile);
+        manifest.add(shardFile, games);
+        manifest.write();
+
+        List<File> files = new ArrayList<>(shardFiles);
+        files.add(shardFile);
+        List<OrionDatabase> databases = new ArrayList<>(shards);
+        databases.add(added);
+        return new ShardedDatabase(manifest.file, files, databases, manifest.idBasesArray());
+    }
+
+    /**
+     * Import byte ranges of a PGN file into the given shard files in parallel.
+     * Duplicate games are dropped across all shards.
+     *
+     * @return Number of games imported into each shard
+     */
+    static int[] importShards(File pgnFile, long[] splitPoints, List<File> shardFiles,
+                              GameDeduplicator deduplicator, ImportProgressListener listener)
+            throws IOException {
+        int shards = shardFiles.size();
+        double[] fractions = new double[shards];
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.min(shards, Runtime.getRuntime().availableProcessors()), r -> {
+                Thread thread = new Thread(r, "shard-import");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < shards; i++) {
+                int shard = i;
+                futures.add(executor.submit(() -> importShard(
+                    pgnFile, splitPoints[shard], splitPoints[shard + 1], shardFiles.get(shard), deduplicator,
+                    (current, total, message) -> {
+                        double overall;
+                        synchronized (fractions) {
+                            if (total > 0) {
+                                fractions[shard] = Math.min(1.0, (double) current / total);
+                            }
+                            double sum = 0;
+                            for (double fraction : fractions) {
+                                sum += fraction;
+                            }
+                            overall = sum / shards;
+                        }
+                        listener.onProgress(overall, "Shard " + (shard + 1) + "/" + shards + ": " + message);
+                    })));
+            }
+
+            int[] games = new int[shards];
+            for (int i = 0; i < shards; i++) {
+                games[i] = futures.get(i).get();
+            }
+            return games;
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            shardFiles.forEach(File::delete);
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shardFiles.forEach(File::delete);
+            throw new IOException("Import interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Copy one byte range into a scratch PGN file, without duplicate games, and import it.
+     */
+    private static int importShard(File pgnFile, long start, long end, File shardFile,
+                                   GameDeduplicator deduplicator, ProgressCallback callback)
+            throws IOException {
+        File part = new File(shardFile.getPath() + ".pgn.part");
+        try {
+            try (FileChannel in = new FileInputStream(pgnFile).getChannel()) {
+                in.position(start);
+                writeDeduplicated(Channels.newInputStream(in), end - start, part, deduplicator);
+            }
+            return OrionDatabase.createFromPgn(part, shardFile, callback, true, false).getGamesImported();
+        } finally {
+            part.delete();
+        }
+    }
+
+    /**
+     * Copy up to maxBytes of PGN text into a file, dropping duplicate games.
+     */
+    static void writeDeduplicated(InputStream in, long maxBytes, File target, GameDeduplicator deduplicator)
+            throws IOException {
+        byte[] buffer = new byte[1 << 16];
+        try (OutputStream out = new DeduplicatingPgnOutputStream(
+                new BufferedOutputStream(new FileOutputStream(target), buffer.length), deduplicator)) {
+            long remaining = maxBytes;
+            int read;
+            while (remaining > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    /**
+     * Find byte offsets splitting a PGN file into about equal ranges that each
+     * start at a game ("[Event " at the start of a line).
+     *
+     * @return Ascending offsets, starting with 0 and ending with the file length
+     */
+    static long[] findSplitPoints(File pgnFile, int shardCount) throws IOException {
+        long length = pgnFile.length();
+        List<Long> points = new ArrayList<>();
+        points.add(0L);
+
+        try (FileChannel channel = new FileInputStream(pgnFile).getChannel()) {
+            for (int i = 1; i < shardCount; i++) {
+                long target = Math.max(length * i / shardCount, points.get(points.size() - 1) + 1);
+                long gameStart = findGameStart(channel, target);
+                if (gameStart < 0 || gameStart >= length) {
+                    break;
+                }
+                if (gameStart > points.get(points.size() - 1)) {
+                    points.add(gameStart);
+                }
+            }
+        }
+
+        points.add(length);
+        long[] result = new long[points.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = points.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Offset of the first game starting at or after the given offset, or -1.
+     */
+    private static long findGameStart(FileChannel channel, long from) throws IOException {
+        if (from == 0) {
+            return 0;
+        }
+
+        // Include the preceding byte so a game starting exactly at from is found
+        long position = from - 1;
+        InputStream in = new BufferedInputStream(Channels.newInputStream(
+            channel.position(position)), 1 << 16);
+        int matched = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            position++;
+            if (b == GAME_START[matched]) {
+                matched++;
+                if (matched == GAME_START.length) {
+                    // Offset of the '[' after the newline
+                    return position - GAME_START.length + 1;
+                }
+            } else {
+                matched = b == GAME_START[0] ? 1 : 0;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * File name of shard i next to the manifest.
+     */
+    static File shardFile(File manifestFile, int index) {
+        String name = manifestFile.getName();
+        if (name.endsWith(MANIFEST_EXTENSION)) {
+            name = name.substring(0, name.length() - MANIFEST_EXTENSION.length());
+        }
+        return new File(manifestFile.getAbsoluteFile().getParentFile(), name + "." + index + ".oriondb");
+    }
+
+    /**
+     * Search all shards for games by player name.
+     */
+    public ShardedGameList searchByPlayer(String playerName) throws IOException {
+        return query(shard -> shard.search().withPlayer(playerName).execute());
+    }
+
+    /**
+     * Get all games of all shards.
+     */
+    public ShardedGameList getAllGames() throws IOException {
+        return query(shard -> shard.search().execute());
+    }
+
+    /**
+     * Search one shard for games by player name.
+     */
+    public ShardedGameList searchShardByPlayer(int shard, String playerName) throws IOException {
+        return queryShard(shard, db -> db.search().withPlayer(playerName).execute());
+    }
+
+    /**
+     * Get all games of one shard.
+     */
+    public ShardedGameList getShardGames(int shard) throws IOException {
+        return queryShard(shard, db -> db.search().execute());
+    }
+
+    /**
+     * Get a game by its database-wide id.
+     */
+    public Game getGameById(int globalId) throws IOException {
+        int shard = shardOf(globalId);
+        return shards.get(shard).getGameById(globalId - idBases[shard]);
+    }
+
+    /**
+     * Get total game count over all shards.
+     */
+    public int getGameCount() {
+        int total = 0;
+        for (OrionDatabase shard : shards) {
+            total += shard.getGameCount();
+        }
+        return total;
+    }
+
+    /**
+     * Get statistics of all shards.
+     */
+    public String getStats() {
+        if (shards.size() == 1) {
+            return shards.get(0).getStats();
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(shards.size()).append(" shards, ").append(getGameCount()).append(" games\n");
+        for (int i = 0; i < shards.size(); i++) {
+            sb.append("Shard ").append(i).append(" (").append(shardFiles.get(i).getName()).append("): ")
+              .append(shards.get(i).getStats()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public OrionDatabase getShard(int index) {
+        return shards.get(index);
+    }
+
+    public File getShardFile(int index) {
+        return shardFiles.get(index);
+    }
+
+    /**
+     * Get the database-wide id of the first game a shard can hold.
+     */
+    public int getIdBase(int index) {
+        return idBases[index];
+    }
+
+    /**
+     * Get the manifest file, or null for a single OrionDB file.
+     */
+    public File getManifestFile() {
+        return manifestFile;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException first = closeAll(shards);
+        if (first != null) {
+            throw first;
+        }
+    }
+
+    /**
+     * Run a query on every shard in parallel and concatenate the results.
+     */
+    private ShardedGameList query(ShardQuery query) throws IOException {
+        List<List<Game>> parts = new ArrayList<>();
+        if (shards.size() == 1) {
+            parts.add(query.run(shards.get(0)));
+            return new ShardedGameList(parts, idBases);
+        }
+
+        List<CompletableFuture<List<Game>>> futures = new ArrayList<>();
+        for (OrionDatabase shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return query.run(shard);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }));
+        }
+        try {
+            for (CompletableFuture<List<Game>> future : futures) {
+                parts.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+        return new ShardedGameList(parts, idBases);
+    }
+
+    /**
+     * Run a query on a single shard, keeping database-wide ids.
+     */
+    private ShardedGameList queryShard(int shard, ShardQuery query) throws IOException {
+        return new ShardedGameList(List.of(query.run(shards.get(shard))), new int[] {idBases[shard]});
+    }
+
+    /**
+     * Find the shard owning a global id.
+     */
+    private int shardOf(int globalId) {
+        for (int i = idBases.length - 1; i > 0; i--) {
+            if (globalId >= idBases[i]) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static IOException closeAll(List<OrionDatabase> databases) {
+        IOException first = null;
+        for (OrionDatabase database : databases) {
+            try {
+                database.close();
+            } catch (IOException e) {
+                if (first == null) {
+                    first = e;
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Query against one shard.
+     */
+    @FunctionalInterface
+    private interface ShardQuery {
+        List<Game> run(OrionDatabase shard) throws IOException;
+    }
+
+    /**
+     * Shard manifest: shard files relative to the manifest, game counts and id offsets.
+     */
+    static class Manifest {
+        private final File file;
+        private final List<File> files = new ArrayList<>();
+        private final List<Integer> gameCounts = new ArrayList<>();
+        private final List<Integer> idBases = new ArrayList<>();
+
+        Manifest(File file) {
+            this.file = file;
+        }
+
+        static Manifest read(File file) throws IOException {
+            Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(file)) {
+                properties.load(in);
+            }
+
+            Manifest manifest = new Manifest(file);
+            File directory = file.getAbsoluteFile().getParentFile();
+            int count = Integer.parseInt(properties.getProperty("shard.count", "0"));
+            for (int i = 0; i < count; i++) {
+                String name = properties.getProperty("shard." + i + ".file");
+                if (name == null) {
+                    throw new IOException("Manifest " + file + " is missing shard " + i);
+                }
+                manifest.files.add(new File(directory, name));
+                manifest.gameCounts.add(Integer.parseInt(properties.getProperty("shard." + i + ".games", "0")));
+                manifest.idBases.add(Integer.parseInt(properties.getProperty("shard." + i + ".idBase", "0")));
+            }
+            return manifest;
+        }
+
+        /**
+         * Add a shard after the existing ones. Its ids start past the highest
+         * id the previous shard can use (ids may be 0- or 1-based).
+         */
+        void add(File shardFile, int games) {
+            int base = 0;
+            if (!files.isEmpty()) {
+                int last = files.size() - 1;
+                base = idBases.get(last) + gameCounts.get(last) + 1;
+            }
+            files.add(shardFile);
+            gameCounts.add(games);
+            idBases.add(base);
+        }
+
+        void write() throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("shard.count", String.valueOf(files.size()));
+            for (int i = 0; i < files.size(); i++) {
+                properties.setProperty("shard." + i + ".file", files.get(i).getName());
+                properties.setProperty("shard." + i + ".games", String.valueOf(gameCounts.get(i)));
+                properties.setProperty("shard." + i + ".idBase", String.valueOf(idBases.get(i)));
+            }
+
+            // Write next to the manifest and rename, so readers never see a partial file
+            File temp = new File(file.getPath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(temp)) {
+                properties.store(out, "Orion sharded database");
+            }
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        int[] idBasesArray() {
+            return idBases.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.orion.visualizer.service;
+
+import com.oriondb.model.Game;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only concatenation of per-shard query results, in shard order.
+ * Game.getId() is only unique within a shard; globalIdAt translates it to the
+ * database-wide id accepted by DatabaseService.getGameById.
+ */
+public class ShardedGameList extends AbstractList<Game> implements RandomAccess {
+    private final List<List<Game>> parts;
+    private final int[] idBases;
+    private final int[] offsets;
+    private final int size;
+
+    /**
+     * @param parts Results of each shard
+     * @param idBases Global id offset of each shard
+     */
+    ShardedGameList(List<List<Game>> parts, int[] idBases) {
+        this.parts = parts;
+        this.idBases = idBases;
+        this.offsets = new int[parts.size() + 1];
+        for (int i = 0; i < parts.size(); i++) {
+            offsets[i + 1] = offsets[i] + parts.get(i).size();
+        }
+        this.size = offsets[parts.size()];
+    }
+
+    @Override
+    public Game get(int index) {
+        int part = partOf(index);
+        return parts.get(part).get(index - offsets[part]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the database-wide id of the game at the given index.
+     */
+    public int globalIdAt(int index) {
+        int part = partOf(index);
+        return idBases[part] + parts.get(part).get(index - offsets[part]).getId();
+    }
+
+    /**
+     * Find the shard holding the given index.
+     */
+    private int partOf(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        // Last part whose offset is <= index
+        int low = 0;
+        int high = parts.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
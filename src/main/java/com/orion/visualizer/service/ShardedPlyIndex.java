@@ -0,0 +1,66 @@
+package com.orion.visualizer.service;
+
+import java.util.List;
+
+/**
+ * The ply indexes of all shards of a database, read as one.
+ *
+ * Slots run through the shards in order: the slots of shard i follow those of
+ * shard i - 1. A slot returned by find() is only valid for this instance.
+ */
+public class ShardedPlyIndex {
+    private final List<PlyIndex> shards;
+    private final int[] idBases;
+    private final int[] slotBases;
+
+    /**
+     * @param idBases First database-wide game id of each shard
+     */
+    public ShardedPlyIndex(List<PlyIndex> shards, int[] idBases) {
+        this.shards = List.copyOf(shards);
+        this.idBases = idBases.clone();
+        this.slotBases = new int[shards.size()];
+        for (int i = 1; i < slotBases.length; i++) {
+            slotBases[i] = slotBases[i - 1] + shards.get(i - 1).getIndexedGameCount();
+        }
+    }
+
+    /**
+     * Find the slot of a game.
+     *
+     * @return The slot, or -1 if the game is not indexed
+     */
+    public int find(int gameId) {
+        int shard = shardOf(idBases, gameId);
+        int slot = shards.get(shard).find(gameId);
+        return slot >= 0 ? slotBases[shard] + slot : -1;
+    }
+
+    /**
+     * Number of legal plies stored for the game in a slot.
+     */
+    public int getPlyCount(int slot) {
+        int shard = shardOf(slotBases, slot);
+        return shards.get(shard).getPlyCount(slot - slotBases[shard]);
+    }
+
+    /**
+     * SAN of a ply (0 = White's first move).
+     */
+    public String getMove(int slot, int ply) {
+        int shard = shardOf(slotBases, slot);
+        return shards.get(shard).getMove(slot - slotBases[shard], ply);
+    }
+
+    /**
+     * Find the last shard whose range starts at or before a value.
+     */
+    private static int shardOf(int[] bases, int value) {
+        for (int i = bases.length - 1; i > 0; i--) {
+            if (value >= bases[i]) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
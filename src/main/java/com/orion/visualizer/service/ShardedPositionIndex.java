@@ -0,0 +1,84 @@
+package com.orion.visualizer.service;
+
+import com.orion.visualizer.model.PositionStats;
+import com.orion.visualizer.util.ZobristHasher;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The position indexes of all shards of a database, looked up as one.
+ *
+ * Each shard's index holds database-wide game ids, and shards cover ascending
+ * id ranges, so the game ids found in the shards only need concatenating. The
+ * move statistics of the shards are added up.
+ */
+public class ShardedPositionIndex {
+    private final List<PositionIndex> shards;
+
+    public ShardedPositionIndex(List<PositionIndex> shards) {
+        this.shards = List.copyOf(shards);
+    }
+
+    /**
+     * Number of games the shard indexes were built from.
+     */
+    public int getIndexedGameCount() {
+        int total = 0;
+        for (PositionIndex shard : shards) {
+            total += shard.getIndexedGameCount();
+        }
+        return total;
+    }
+
+    /**
+     * Look up the position of a FEN string.
+     */
+    public PositionStats lookup(String fen) {
+        return lookup(ZobristHasher.hash(fen));
+    }
+
+    /**
+     * Look up a position by its Zobrist hash in every shard.
+     *
+     * @return The position's statistics; empty if no indexed game reached it
+     */
+    public PositionStats lookup(long hash) {
+        if (shards.size() == 1) {
+            return shards.get(0).lookup(hash);
+        }
+
+        Map<String, int[]> results = new LinkedHashMap<>();
+        List<int[]> shardIds = new ArrayList<>(shards.size());
+        int gameCount = 0;
+        for (PositionIndex shard : shards) {
+            PositionStats stats = shard.lookup(hash);
+            for (PositionStats.MoveStats move : stats.getMoves()) {
+                int[] counts = results.computeIfAbsent(move.getMove(), m -> new int[3]);
+                counts[0] += move.getWhiteWins();
+                counts[1] += move.getDraws();
+                counts[2] += move.getBlackWins();
+            }
+            shardIds.add(stats.getGameIds());
+            gameCount += stats.getGameCount();
+        }
+
+        List<PositionStats.MoveStats> moves = new ArrayList<>(results.size());
+        for (Map.Entry<String, int[]> entry : results.entrySet()) {
+            int[] counts = entry.getValue();
+            moves.add(new PositionStats.MoveStats(entry.getKey(), counts[0], counts[1], counts[2]));
+        }
+        // Most played first, as in each shard's records
+        moves.sort((a, b) -> Integer.compare(b.getTotal(), a.getTotal()));
+
+        int[] gameIds = new int[gameCount];
+        int pos = 0;
+        for (int[] ids : shardIds) {
+            System.arraycopy(ids, 0, gameIds, pos, ids.length);
+            pos += ids.length;
+        }
+        return new PositionStats(hash, moves, gameIds);
+    }
+}
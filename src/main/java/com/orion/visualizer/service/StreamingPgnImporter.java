@@ -0,0 +1,204 @@
+package com.orion.visualizer.service;
+
+import com.oriondb.core.OrionDatabase;
+import com.orion.visualizer.util.PgnInputStreams;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Imports a plain or compressed PGN file into a sharded database in one pass.
+ *
+ * The decompressed stream is cut at game boundaries into segments of about
+ * segmentBytes, and each segment is imported into its own shard while the next
+ * one is being read. OrionDB only imports from files, so each segment is
+ * written to a scratch file that is deleted right after its import; at most
+ * maxConcurrentImports segments exist at a time, so scratch space stays
+ * bounded no matter how large the archive is. Duplicate games are dropped
+ * across all segments while they are written, and their fingerprints are
+ * saved next to the manifest for later appends.
+ */
+public class StreamingPgnImporter {
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    private static final byte[] GAME_START = "\n[Event ".getBytes(StandardCharsets.US_ASCII);
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final long segmentBytes;
+    private final int maxConcurrentImports;
+
+    public StreamingPgnImporter(long segmentBytes, int maxConcurrentImports) {
+        this.segmentBytes = segmentBytes;
+        this.maxConcurrentImports = Math.max(1, maxConcurrentImports);
+    }
+
+    /**
+     * Import a PGN file (.pgn, .pgn.gz or .zip) into shards described by a new manifest.
+     * Progress is reported on compressed bytes read.
+     */
+    public ImportSummary importToShards(File source, File manifestFile, ImportProgressListener listener)
+            throws IOException {
+        long startTime = System.currentTimeMillis();
+        long sourceLength = Math.max(1, source.length());
+        AtomicLong compressedRead = new AtomicLong();
+        GameDeduplicator deduplicator = GameDeduplicator.forPgn(source);
+        File fingerprintFile = GameDeduplicator.fileFor(manifestFile);
+        fingerprintFile.delete();
+
+        Semaphore segmentSlots = new Semaphore(maxConcurrentImports);
+        ExecutorService executor = Executors.newFixedThreadPool(maxConcurrentImports, r -> {
+            Thread thread = new Thread(r, "segment-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<File> shardFiles = new ArrayList<>();
+        List<Future<Integer>> imports = new ArrayList<>();
+
+        try (InputStream in = PgnInputStreams.open(source, compressedRead)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            SegmentWriter segment = null;
+            int read;
+
+            while ((read = in.read(buffer)) != -1) {
+                int start = 0;
+                while (start < read) {
+                    if (segment == null) {
+                        segmentSlots.acquire();
+                        segment = new SegmentWriter(ShardedDatabase.shardFile(manifestFile, shardFiles.size()), deduplicator);
+                        shardFiles.add(segment.shardFile);
+                    }
+
+                    // Once the segment is full, cut it before the next game
+                    int cut = segment.size >= segmentBytes ? findGameStart(buffer, start, read) : -1;
+                    if (cut < 0) {
+                        segment.write(buffer, start, read - start);
+                        start = read;
+                    } else {
+                        segment.write(buffer, start, cut - start);
+                        imports.add(submit(executor, segment, segmentSlots));
+                        segment = null;
+                        start = cut;
+                    }
+                }
+
+                listener.onProgress((double) compressedRead.get() / sourceLength,
+                    String.format("Read %d of %d MB, %d segment(s) started",
+                        compressedRead.get() >> 20, sourceLength >> 20, shardFiles.size()));
+            }
+            if (segment != null) {
+                imports.add(submit(executor, segment, segmentSlots));
+            }
+
+            int[] games = new int[imports.size()];
+            int total = 0;
+            for (int i = 0; i < imports.size(); i++) {
+                games[i] = imports.get(i).get();
+                total += games[i];
+            }
+
+            ShardedDatabase.Manifest manifest = new ShardedDatabase.Manifest(manifestFile);
+            for (int i = 0; i < games.length; i++) {
+                manifest.add(shardFiles.get(i), games[i]);
+            }
+            manifest.write();
+            deduplicator.save(fingerprintFile);
+            return new ImportSummary(total, games.length, 0, deduplicator.getDuplicatesDropped(),
+                System.currentTimeMillis() - startTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cleanUp(executor, shardFiles);
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            cleanUp(executor, shardFiles);
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } catch (IOException | RuntimeException e) {
+            cleanUp(executor, shardFiles);
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Close a segment and import it in the background, freeing its slot afterwards.
+     */
+    private Future<Integer> submit(ExecutorService executor, SegmentWriter segment, Semaphore slots)
+            throws IOException {
+        segment.close();
+        return executor.submit(() -> {
+            try {
+                return OrionDatabase.createFromPgn(segment.scratchFile, segment.shardFile,
+                    (current, total, message) -> { }, true, false).getGamesImported();
+            } finally {
+                segment.scratchFile.delete();
+                slots.release();
+            }
+        });
+    }
+
+    /**
+     * Index of the '[' of the first "[Event " line start in the buffer range, or -1.
+     * A game header split across two reads is found in a later buffer instead.
+     */
+    private static int findGameStart(byte[] buffer, int from, int to) {
+        outer:
+        for (int i = Math.max(from - 1, 0); i <= to - GAME_START.length; i++) {
+            for (int j = 0; j < GAME_START.length; j++) {
+                if (buffer[i + j] != GAME_START[j]) {
+                    continue outer;
+                }
+            }
+            return i + 1;
+        }
+        return -1;
+    }
+
+    private static void cleanUp(ExecutorService executor, List<File> shardFiles) {
+        executor.shutdownNow();
+        for (File shardFile : shardFiles) {
+            shardFile.delete();
+            new File(shardFile.getPath() + ".pgn.part").delete();
+        }
+    }
+
+    /**
+     * Scratch PGN file for one segment; size counts the bytes before deduplication.
+     */
+    private static class SegmentWriter {
+        private final File shardFile;
+        private final File scratchFile;
+        private final OutputStream out;
+        private long size;
+
+        SegmentWriter(File shardFile, GameDeduplicator deduplicator) throws IOException {
+            this.shardFile = shardFile;
+            this.scratchFile = new File(shardFile.getPath() + ".pgn.part");
+            this.out = new DeduplicatingPgnOutputStream(
+                new BufferedOutputStream(new FileOutputStream(scratchFile), BUFFER_SIZE), deduplicator);
+        }
+
+        void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            size += length;
+        }
+
+        void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.orion.visualizer.service;
+
+import com.orion.visualizer.model.OpeningTreeNode;
+
+/**
+ * Opening tree built from a uniform random sample of the candidate games.
+ * Node counts are sample counts; divide by getSampleFraction() to estimate
+ * the counts of the exact tree.
+ */
+public class TreePreview {
+    private final OpeningTreeNode root;
+    private final int sampledGames;
+    private final int candidateGames;
+    private final long elapsedMillis;
+
+    public TreePreview(OpeningTreeNode root, int sampledGames, int candidateGames, long elapsedMillis) {
+        this.root = root;
+        this.sampledGames = sampledGames;
+        this.candidateGames = candidateGames;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public OpeningTreeNode getRoot() {
+        return root;
+    }
+
+    public int getSampledGames() {
+        return sampledGames;
+    }
+
+    public int getCandidateGames() {
+        return candidateGames;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Fraction of the candidate games in the sample.
+     */
+    public double getSampleFraction() {
+        return candidateGames > 0 ? (double) sampledGames / candidateGames : 1.0;
+    }
+
+    /**
+     * Check whether every candidate game was sampled, so the preview is exact.
+     */
+    public boolean isExact() {
+        return sampledGames >= candidateGames;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("preview from %d of %d games, %d ms", sampledGames, candidateGames, elapsedMillis);
+    }
+}
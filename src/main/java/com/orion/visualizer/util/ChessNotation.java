@@ -117,6 +117,44 @@ public class ChessNotation {
         }
     }
 
+    /**
+     * Parse the piece placement field of a FEN string.
+     * 
+     * @return 64 piece characters indexed by rank * 8 + file (a1 = 0), with 0 for empty squares
+     * @throws IllegalArgumentException if the placement field is malformed
+     */
+    public static char[] parseFenPlacement(String fen) {
+        if (fen == null || fen.isBlank()) {
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+        
+        char[] pieces = new char[64];
+        String placement = fen.trim().split("\\s+")[0];
+        int rank = 7;
+        int file = 0;
+        
+        for (int i = 0; i < placement.length(); i++) {
+            char c = placement.charAt(i);
+            if (c == '/') {
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else if ("KQRBNPkqrbnp".indexOf(c) >= 0 && file < 8 && rank >= 0) {
+                pieces[rank * 8 + file] = c;
+                file++;
+            } else {
+                throw new IllegalArgumentException("Invalid FEN placement: " + placement);
+            }
+            
+            if (file > 8 || rank < 0) {
+                throw new IllegalArgumentException("Invalid FEN placement: " + placement);
+            }
+        }
+        
+        return pieces;
+    }
+
     /**
      * Extract the starting position FEN.
      */
@@ -0,0 +1,155 @@
+package com.orion.visualizer.util;
+
+import com.orion.visualizer.service.MetricsService;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Monitors JavaFX application thread responsiveness.
+ *
+ * A watchdog thread posts a heartbeat through Platform.runLater and an
+ * AnimationTimer records the interval between pulses. When a heartbeat has been
+ * pending longer than the stall threshold, the stack of the FX thread is logged
+ * while the stall is still in progress. Results are exported to MetricsService.
+ */
+public class FxThreadMonitor {
+    public static final long DEFAULT_STALL_THRESHOLD_MS = 250;
+    private static final long HEARTBEAT_INTERVAL_MS = 100;
+
+    private final long stallThresholdNanos;
+    private final MetricsService metrics;
+    private final ScheduledExecutorService watchdog;
+    private final AnimationTimer pulseTimer;
+
+    private Thread fxThread;
+    private Consumer<Long> onStall;
+
+    // Written by the watchdog and the FX thread
+    private volatile long heartbeatPostedAt;
+    private volatile boolean heartbeatPending;
+    private volatile boolean stallInProgress;
+    private volatile long stallCount;
+
+    public FxThreadMonitor() {
+        this(DEFAULT_STALL_THRESHOLD_MS);
+    }
+
+    public FxThreadMonitor(long stallThresholdMs) {
+        this.stallThresholdNanos = TimeUnit.MILLISECONDS.toNanos(stallThresholdMs);
+        this.metrics = MetricsService.getInstance();
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fx-thread-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pulseTimer = new AnimationTimer() {
+            private long lastPulse;
+
+            @Override
+            public void handle(long now) {
+                if (lastPulse != 0) {
+                    long intervalMs = TimeUnit.NANOSECONDS.toMillis(now - lastPulse);
+                    metrics.updateMax("ui.fx.pulse.maxIntervalMs", intervalMs);
+                    if (now - lastPulse > stallThresholdNanos) {
+                        metrics.increment("ui.fx.pulse.slow");
+                    }
+                }
+                lastPulse = now;
+            }
+        };
+    }
+
+    /**
+     * Start monitoring. Must be called on the FX application thread.
+     */
+    public void start() {
+        if (!Platform.isFxApplicationThread()) {
+            throw new IllegalStateException("FxThreadMonitor must be started on the FX application thread");
+        }
+        fxThread = Thread.currentThread();
+        pulseTimer.start();
+        watchdog.scheduleAtFixedRate(this::checkHeartbeat,
+            HEARTBEAT_INTERVAL_MS, HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop monitoring.
+     */
+    public void stop() {
+        pulseTimer.stop();
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * Set callback invoked on the FX thread with the total stall count after each stall ends.
+     */
+    public void setOnStall(Consumer<Long> callback) {
+        this.onStall = callback;
+    }
+
+    /**
+     * Get the number of stalls detected so far.
+     */
+    public long getStallCount() {
+        return stallCount;
+    }
+
+    /**
+     * Watchdog tick: post a new heartbeat or detect a stalled one.
+     */
+    private void checkHeartbeat() {
+        long now = System.nanoTime();
+
+        if (!heartbeatPending) {
+            heartbeatPending = true;
+            heartbeatPostedAt = now;
+            Platform.runLater(this::onHeartbeat);
+            return;
+        }
+
+        if (!stallInProgress && now - heartbeatPostedAt > stallThresholdNanos) {
+            stallInProgress = true;
+            stallCount++;
+            metrics.increment("ui.fx.stalls");
+            logFxThreadStack(TimeUnit.NANOSECONDS.toMillis(now - heartbeatPostedAt));
+        }
+    }
+
+    /**
+     * Heartbeat delivered on the FX thread.
+     */
+    private void onHeartbeat() {
+        long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - heartbeatPostedAt);
+        metrics.setGauge("ui.fx.heartbeat.lastLatencyMs", latencyMs);
+        metrics.updateMax("ui.fx.heartbeat.maxLatencyMs", latencyMs);
+        heartbeatPending = false;
+
+        if (stallInProgress) {
+            stallInProgress = false;
+            metrics.updateMax("ui.fx.stall.maxDurationMs", latencyMs);
+            System.err.println("FX thread stall ended after " + latencyMs + " ms");
+            if (onStall != null) {
+                onStall.accept(stallCount);
+            }
+        }
+    }
+
+    /**
+     * Log the current stack of the FX thread.
+     */
+    private void logFxThreadStack(long pendingMs) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("FX thread stall: heartbeat pending for ").append(pendingMs).append(" ms\n");
+        if (fxThread != null) {
+            for (StackTraceElement element : fxThread.getStackTrace()) {
+                sb.append("\tat ").append(element).append('\n');
+            }
+        }
+        System.err.print(sb);
+    }
+}
@@ -0,0 +1,228 @@
+package com.orion.visualizer.util;
+
+import com.orion.visualizer.model.GameReference;
+import com.orion.visualizer.model.OpeningTreeNode;
+import com.orion.visualizer.model.PlayerSide;
+import com.orion.visualizer.v3.model.RepertoireNode;
+import com.orion.visualizer.v3.model.RepertoireTree;
+
+import java.lang.ref.Reference;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Command-line harness that measures the retained heap of the tree data structures.
+ *
+ * Trees of known shapes are built from synthetic games and the heap is sampled
+ * after a forced GC before and after each build. The resulting table is meant for
+ * sizing -Xmx and for validating memory-saving changes to the tree model.
+ *
+ * Usage: java -cp ... com.orion.visualizer.util.HeapFootprintHarness [games]
+ */
+public class HeapFootprintHarness {
+    private static final int DEFAULT_GAMES = 100_000;
+    private static final int OPENING_DEPTH = 20; // Same depth as AnalysisService
+    private static final int PLAYER_POOL = 2_000;
+    private static final int EVENT_POOL = 500;
+    private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2"};
+
+    private final Random random = new Random(42); // Fixed seed for comparable runs
+    private final List<String[]> rows = new ArrayList<>();
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+
+        HeapFootprintHarness harness = new HeapFootprintHarness();
+        harness.measureGameReferences(games);
+        harness.measureOpeningTree("narrow (b=2)", games, 2, 0.0);
+        harness.measureOpeningTree("wide (b=8)", games, 8, 0.0);
+        // Project from the skewed tree, which is closest to real opening trees
+        double bytesPerGame = harness.measureOpeningTree("skewed (b=6)", games, 6, 0.7);
+        harness.measureRepertoireTree("repertoire (b=3, d=8)", 3, 8);
+        harness.measureRepertoireTree("repertoire (b=2, d=14)", 2, 14);
+        harness.printTable(games, bytesPerGame);
+    }
+
+    /**
+     * Measure GameReference objects on their own.
+     */
+    private void measureGameReferences(int games) {
+        long before = usedHeapAfterGc();
+        GameReference[] refs = new GameReference[games];
+        for (int i = 0; i < games; i++) {
+            refs[i] = createGame(i);
+        }
+        long retained = usedHeapAfterGc() - before;
+        Reference.reachabilityFence(refs);
+
+        addRow("GameReference only", games, 0, 0, retained,
+            "-", perUnit(retained, games), perUnit(retained, games));
+    }
+
+    /**
+     * Build an OpeningTreeNode tree in which every game follows one path of
+     * OPENING_DEPTH plies. With skew 0 every branch is equally likely; larger
+     * values concentrate games on the first branches as in real repertoires.
+     *
+     * @return Retained bytes per game
+     */
+    private double measureOpeningTree(String shape, int games, int branching, double skew) {
+        long before = usedHeapAfterGc();
+
+        GameReference[] refs = new GameReference[games];
+        for (int i = 0; i < games; i++) {
+            refs[i] = createGame(i);
+        }
+        long refsRetained = usedHeapAfterGc() - before;
+
+        OpeningTreeNode root = new OpeningTreeNode(ChessNotation.getStartingFen());
+        long postings = 0;
+        for (GameReference ref : refs) {
+            OpeningTreeNode current = root;
+            root.addGame(ref);
+            for (int ply = 1; ply <= OPENING_DEPTH; ply++) {
+                int branch = pickBranch(branching, skew);
+                String move = "m" + branch;
+                current = current.getOrCreateChild(move, syntheticFen(ply, current, branch), (ply + 1) / 2);
+                current.addGame(ref);
+                postings++;
+            }
+        }
+        // Published trees are frozen, which trims their game lists
+        root.freeze();
+        long retained = usedHeapAfterGc() - before;
+        Reference.reachabilityFence(refs);
+
+        int nodes = root.countNodes();
+        long structure = retained - refsRetained;
+        Reference.reachabilityFence(root);
+
+        addRow(shape, games, nodes, postings, retained,
+            perUnit(structure, nodes), perUnit(refsRetained, games), perUnit(retained, games));
+        return (double) retained / games;
+    }
+
+    /**
+     * Build a complete RepertoireTree with the given branching factor and depth.
+     */
+    private void measureRepertoireTree(String shape, int branching, int depth) {
+        long before = usedHeapAfterGc();
+        RepertoireTree tree = new RepertoireTree();
+        addRepertoireLevel(tree.getRoot(), branching, depth, 1);
+        long retained = usedHeapAfterGc() - before;
+
+        int nodes = tree.getTotalMoves();
+        Reference.reachabilityFence(tree);
+
+        addRow(shape, 0, nodes, 0, retained, perUnit(retained, nodes), "-", "-");
+    }
+
+    private void addRepertoireLevel(RepertoireNode parent, int branching, int maxDepth, int ply) {
+        if (ply > maxDepth) {
+            return;
+        }
+        for (int b = 0; b < branching; b++) {
+            RepertoireNode child = new RepertoireNode("m" + b, syntheticFen(ply, parent, b));
+            child.setMainLine(b == 0);
+            parent.addChild(child);
+            addRepertoireLevel(child, branching, maxDepth, ply + 1);
+        }
+    }
+
+    /**
+     * Create a game reference with freshly allocated strings, as a deserialized
+     * OrionDB game would have.
+     */
+    private GameReference createGame(int id) {
+        String white = new String("Player " + random.nextInt(PLAYER_POOL) + ", Synthetic");
+        String black = new String("Player " + random.nextInt(PLAYER_POOL) + ", Synthetic");
+        String event = new String("Event " + random.nextInt(EVENT_POOL));
+        String result = new String(RESULTS[random.nextInt(RESULTS.length)]);
+        LocalDate date = LocalDate.of(1970 + random.nextInt(55), 1 + random.nextInt(12), 1 + random.nextInt(28));
+        PlayerSide side = random.nextBoolean() ? PlayerSide.WHITE : PlayerSide.BLACK;
+        return new GameReference(id, white, black, result, date, event, side);
+    }
+
+    private int pickBranch(int branching, double skew) {
+        if (skew <= 0) {
+            return random.nextInt(branching);
+        }
+        // Geometric choice: branch 0 with probability skew, then the remainder
+        int branch = 0;
+        while (branch < branching - 1 && random.nextDouble() > skew) {
+            branch++;
+        }
+        return branch;
+    }
+
+    /**
+     * Produce a unique FEN-length string for a synthetic position.
+     */
+    private static String syntheticFen(int ply, Object parent, int branch) {
+        return String.format("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - %08x %d",
+            System.identityHashCode(parent) ^ branch, ply);
+    }
+
+    /**
+     * Used heap after repeatedly forcing GC until the reading stabilises.
+     */
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        long previous = Long.MAX_VALUE;
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        for (int i = 0; i < 10 && Math.abs(previous - used) > 64 * 1024; i++) {
+            previous = used;
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            used = runtime.totalMemory() - runtime.freeMemory();
+        }
+        return used;
+    }
+
+    private static String perUnit(long bytes, long units) {
+        return units > 0 ? String.format("%.1f", (double) bytes / units) : "-";
+    }
+
+    private void addRow(String shape, int games, int nodes, long postings, long retained,
+                        String bytesPerNode, String bytesPerRef, String bytesPerGame) {
+        rows.add(new String[]{
+            shape,
+            games > 0 ? String.valueOf(games) : "-",
+            nodes > 0 ? String.valueOf(nodes) : "-",
+            postings > 0 ? String.valueOf(postings) : "-",
+            String.format("%.1f", retained / (1024.0 * 1024.0)),
+            bytesPerNode,
+            bytesPerRef,
+            bytesPerGame
+        });
+    }
+
+    /**
+     * Print the result table and a rough heap projection for larger databases.
+     *
+     * @param bytesPerGame Retained bytes per game the projection is based on
+     */
+    private void printTable(int games, double bytesPerGame) {
+        String format = "%-24s %10s %10s %12s %10s %10s %10s %10s%n";
+        System.out.printf(format, "Shape", "Games", "Nodes", "Postings", "MB", "B/node", "B/gameRef", "B/game");
+        for (String[] row : rows) {
+            System.out.printf(format, (Object[]) row);
+        }
+
+        System.out.println();
+        System.out.printf("JVM: %s, max heap %d MB, %d synthetic games, depth %d%n",
+            System.getProperty("java.vm.name"), Runtime.getRuntime().maxMemory() / (1024 * 1024),
+            games, OPENING_DEPTH);
+        for (long projected : new long[]{1_000_000L, 5_000_000L, 10_000_000L}) {
+            System.out.printf("Projected tree heap for %,d games: %,.0f MB%n",
+                projected, projected * bytesPerGame / (1024 * 1024));
+        }
+    }
+}
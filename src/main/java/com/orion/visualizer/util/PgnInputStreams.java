@@ -0,0 +1,165 @@
+package com.orion.visualizer.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Opens plain, gzip and zip PGN files as one decompressed stream.
+ *
+ * Gzip files may contain several members (as produced by concatenating .gz
+ * files); GZIPInputStream reads them back to back. For zip files, all .pgn
+ * entries are streamed in archive order, separated by a blank line. The number
+ * of compressed bytes read from disk is tracked for progress reporting.
+ */
+public class PgnInputStreams {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private PgnInputStreams() {
+    }
+
+    /**
+     * Check whether a file is a compressed archive this class can open.
+     */
+    public static boolean isCompressed(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".gz") || name.endsWith(".zip");
+    }
+
+    /**
+     * Open a PGN file, decompressing it on the fly if needed.
+     *
+     * @param compressedBytesRead Updated with the bytes read from the file itself
+     */
+    public static InputStream open(File file, AtomicLong compressedBytesRead) throws IOException {
+        InputStream raw = new CountingInputStream(
+            new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE), compressedBytesRead);
+        String name = file.getName().toLowerCase();
+        try {
+            if (name.endsWith(".gz")) {
+                return new GZIPInputStream(raw, BUFFER_SIZE);
+            }
+            if (name.endsWith(".zip")) {
+                return new ZipPgnInputStream(new ZipInputStream(raw));
+            }
+            return raw;
+        } catch (IOException e) {
+            raw.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Counts bytes passing through.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final AtomicLong count;
+
+        CountingInputStream(InputStream in, AtomicLong count) {
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count.addAndGet(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count.addAndGet(skipped);
+            return skipped;
+        }
+    }
+
+    /**
+     * Concatenation of the .pgn entries of a zip archive.
+     */
+    private static class ZipPgnInputStream extends InputStream {
+        private static final byte[] SEPARATOR = {'\n', '\n'};
+
+        private final ZipInputStream zip;
+        private boolean inEntry;
+        private boolean firstEntry = true;
+        private int separatorPos = SEPARATOR.length;
+
+        ZipPgnInputStream(ZipInputStream zip) {
+            this.zip = zip;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int read = read(one, 0, 1);
+            return read < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (true) {
+                // Blank line between entries so the last game of one entry ends cleanly
+                if (separatorPos < SEPARATOR.length) {
+                    buffer[offset] = SEPARATOR[separatorPos++];
+                    return 1;
+                }
+                if (inEntry) {
+                    int read = zip.read(buffer, offset, length);
+                    if (read >= 0) {
+                        return read;
+                    }
+                    inEntry = false;
+                }
+                if (!nextPgnEntry()) {
+                    return -1;
+                }
+            }
+        }
+
+        /**
+         * Advance to the next .pgn entry.
+         */
+        private boolean nextPgnEntry() throws IOException {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory() && entry.getName().toLowerCase().endsWith(".pgn")) {
+                    inEntry = true;
+                    if (!firstEntry) {
+                        separatorPos = 0;
+                    }
+                    firstEntry = false;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+}
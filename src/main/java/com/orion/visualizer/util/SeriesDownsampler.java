@@ -0,0 +1,96 @@
+package com.orion.visualizer.util;
+
+/**
+ * Downsampling of chart series with the Largest-Triangle-Three-Buckets algorithm.
+ *
+ * Points are treated as evenly spaced on the x axis (as they are on a category
+ * axis), so only the y values are needed. The first and last points are always
+ * kept; every bucket in between contributes the point forming the largest
+ * triangle with the previously selected point and the average of the next bucket.
+ */
+public class SeriesDownsampler {
+    /** Horizontal pixels per plotted point; denser data is not distinguishable. */
+    public static final double PIXELS_PER_POINT = 2.0;
+    private static final int DEFAULT_TARGET_POINTS = 200;
+    private static final int MIN_TARGET_POINTS = 3;
+
+    private SeriesDownsampler() {
+    }
+
+    /**
+     * Number of points worth plotting for a chart of the given pixel width.
+     * Falls back to a default when the chart has not been laid out yet.
+     */
+    public static int targetPoints(double pixelWidth) {
+        if (pixelWidth <= 0) {
+            return DEFAULT_TARGET_POINTS;
+        }
+        return Math.max(MIN_TARGET_POINTS, (int) (pixelWidth / PIXELS_PER_POINT));
+    }
+
+    /**
+     * Select the indices of the points to keep.
+     *
+     * @param values y values in x order
+     * @param threshold maximum number of points to keep
+     * @return ascending indices into values (all indices when no reduction is needed)
+     */
+    public static int[] lttb(double[] values, int threshold) {
+        int n = values.length;
+        if (threshold >= n || threshold < MIN_TARGET_POINTS) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int[] selected = new int[threshold];
+        int count = 0;
+        selected[count++] = 0;
+
+        // Buckets cover the points between the fixed first and last ones
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+
+            // Average of the next bucket (the last point for the final bucket)
+            int nextStart = end;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, n);
+            double avgX = 0;
+            double avgY = 0;
+            int nextCount = nextEnd - nextStart;
+            if (nextCount <= 0) {
+                avgX = n - 1;
+                avgY = values[n - 1];
+            } else {
+                for (int i = nextStart; i < nextEnd; i++) {
+                    avgX += i;
+                    avgY += values[i];
+                }
+                avgX /= nextCount;
+                avgY /= nextCount;
+            }
+
+            double maxArea = -1;
+            int maxIndex = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((a - avgX) * (values[i] - values[a])
+                                       - (a - i) * (avgY - values[a]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+
+            selected[count++] = maxIndex;
+            a = maxIndex;
+        }
+
+        selected[count] = n - 1;
+        return selected;
+    }
+}
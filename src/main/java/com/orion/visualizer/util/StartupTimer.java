@@ -0,0 +1,49 @@
+package com.orion.visualizer.util;
+
+import com.orion.visualizer.service.MetricsService;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Records startup milestones relative to JVM start in MetricsService:
+ * application start, first rendered frame, and interactive (the first frame
+ * is on screen and the events queued during startup have been processed).
+ */
+public class StartupTimer {
+    private StartupTimer() {
+    }
+
+    /**
+     * Record that Application.start has been entered.
+     */
+    public static void markApplicationStart() {
+        record("startup.applicationStartMs");
+    }
+
+    /**
+     * Record the first frame and interactive milestones. Call on the FX thread
+     * right after the primary stage is shown.
+     */
+    public static void trackFirstFrame() {
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                stop();
+                record("startup.firstFrameMs");
+
+                // Anything queued before this point runs first
+                Platform.runLater(() -> record("startup.interactiveMs"));
+            }
+        }.start();
+    }
+
+    /**
+     * Store milliseconds since JVM start under the given gauge.
+     */
+    private static void record(String name) {
+        long sinceJvmStart = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        MetricsService.getInstance().setGauge(name, sinceJvmStart);
+    }
+}
@@ -0,0 +1,33 @@
+package com.orion.visualizer.util;
+
+/**
+ * Confidence intervals for rates estimated from samples.
+ */
+public class Statistics {
+    /** z value of a two-sided 95% interval. */
+    public static final double Z_95 = 1.959964;
+
+    private Statistics() {
+    }
+
+    /**
+     * Wilson score interval of a proportion. Unlike the normal approximation
+     * it stays within [0, 1] and behaves for small counts and rates near 0 or 1.
+     *
+     * @param successes Number of successes in the sample
+     * @param trials Sample size
+     * @param z z value of the confidence level, e.g. Z_95
+     * @return {low, high} as fractions; {0, 1} for an empty sample
+     */
+    public static double[] wilsonInterval(int successes, int trials, double z) {
+        if (trials <= 0) {
+            return new double[] {0.0, 1.0};
+        }
+        double p = (double) successes / trials;
+        double z2 = z * z;
+        double denominator = 1 + z2 / trials;
+        double center = (p + z2 / (2.0 * trials)) / denominator;
+        double halfWidth = z * Math.sqrt(p * (1 - p) / trials + z2 / (4.0 * trials * trials)) / denominator;
+        return new double[] {Math.max(0.0, center - halfWidth), Math.min(1.0, center + halfWidth)};
+    }
+}
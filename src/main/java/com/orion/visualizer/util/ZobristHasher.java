@@ -0,0 +1,86 @@
+package com.orion.visualizer.util;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist hashing of chess positions.
+ *
+ * The keys come from a fixed seed, so hashes are stable across runs and can be
+ * stored on disk. The en passant file is only hashed when a pawn can actually
+ * capture en passant, so transpositions that differ only in a dead en passant
+ * square hash the same.
+ */
+public class ZobristHasher {
+    private static final String PIECES = "PNBRQKpnbrqk";
+    private static final long[] PIECE_KEYS = new long[PIECES.length() * 64];
+    private static final long[] CASTLING_KEYS = new long[4];
+    private static final long[] EN_PASSANT_KEYS = new long[8];
+    private static final long BLACK_TO_MOVE_KEY;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED_0F_0A1DL);
+        for (int i = 0; i < PIECE_KEYS.length; i++) {
+            PIECE_KEYS[i] = random.nextLong();
+        }
+        for (int i = 0; i < CASTLING_KEYS.length; i++) {
+            CASTLING_KEYS[i] = random.nextLong();
+        }
+        for (int i = 0; i < EN_PASSANT_KEYS.length; i++) {
+            EN_PASSANT_KEYS[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE_KEY = random.nextLong();
+    }
+
+    private ZobristHasher() {
+    }
+
+    /**
+     * Hash the position of a FEN string; move counters are ignored.
+     *
+     * @throws IllegalArgumentException if the FEN is malformed
+     */
+    public static long hash(String fen) {
+        char[] pieces = ChessNotation.parseFenPlacement(fen);
+        String[] fields = fen.trim().split("\\s+");
+        boolean whiteToMove = fields.length < 2 || !fields[1].equals("b");
+
+        long hash = 0;
+        for (int square = 0; square < 64; square++) {
+            if (pieces[square] != 0) {
+                hash ^= PIECE_KEYS[PIECES.indexOf(pieces[square]) * 64 + square];
+            }
+        }
+
+        if (!whiteToMove) {
+            hash ^= BLACK_TO_MOVE_KEY;
+        }
+
+        if (fields.length > 2) {
+            String castling = fields[2];
+            for (int i = 0; i < 4; i++) {
+                if (castling.indexOf("KQkq".charAt(i)) >= 0) {
+                    hash ^= CASTLING_KEYS[i];
+                }
+            }
+        }
+
+        if (fields.length > 3 && fields[3].length() == 2 && fields[3].charAt(0) >= 'a' && fields[3].charAt(0) <= 'h') {
+            int file = fields[3].charAt(0) - 'a';
+            if (canCaptureEnPassant(pieces, file, whiteToMove)) {
+                hash ^= EN_PASSANT_KEYS[file];
+            }
+        }
+
+        return hash;
+    }
+
+    /**
+     * Check whether a pawn of the side to move stands next to the pawn that just advanced two squares.
+     */
+    private static boolean canCaptureEnPassant(char[] pieces, int file, boolean whiteToMove) {
+        int rank = whiteToMove ? 4 : 3;
+        char pawn = whiteToMove ? 'P' : 'p';
+        return (file > 0 && pieces[rank * 8 + file - 1] == pawn)
+            || (file < 7 && pieces[rank * 8 + file + 1] == pawn);
+    }
+}
@@ -34,8 +34,16 @@ public class HistoricalAnalysisController {
     private TimeframeType currentTimeframe = TimeframeType.YEARLY;
     
     public HistoricalAnalysisController() {
-        this.playerSearchService = new PlayerSearchService();
-        this.analysisService = new HistoricalAnalysisService();
+        this(new PlayerSearchService(), new HistoricalAnalysisService());
+    }
+    
+    /**
+     * Create the controller with services built elsewhere (e.g. on a background thread).
+     */
+    public HistoricalAnalysisController(PlayerSearchService playerSearchService,
+                                        HistoricalAnalysisService analysisService) {
+        this.playerSearchService = playerSearchService;
+        this.analysisService = analysisService;
         
         // Initialize views
         this.playerSearchView = new PlayerSearchView();
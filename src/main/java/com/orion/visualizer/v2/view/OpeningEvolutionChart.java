@@ -1,20 +1,38 @@
 package com.orion.visualizer.v2.view;
 
+import com.orion.visualizer.util.SeriesDownsampler;
 import com.orion.visualizer.v2.model.OpeningStatistics;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.scene.chart.CategoryAxis;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
 
+import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.ToDoubleFunction;
 
 /**
  * Chart showing opening usage and performance evolution over time.
+ *
+ * Series are built and downsampled to the chart's pixel width off the FX
+ * thread, then swapped in with a single setAll. Animation is only enabled
+ * while the total number of plotted points stays small.
  */
 public class OpeningEvolutionChart extends LineChart<String, Number> {
     private static final DateTimeFormatter DATE_FORMATTER = 
         DateTimeFormatter.ofPattern("MMM yyyy");
+    private static final int ANIMATION_POINT_LIMIT = 500;
+    
+    // Incremented per display request so that stale background results are dropped
+    private long displayGeneration;
     
     public OpeningEvolutionChart() {
         super(new CategoryAxis(), new NumberAxis());
@@ -39,48 +57,97 @@ public class OpeningEvolutionChart extends LineChart<String, Number> {
      * Display opening statistics with timeline.
      */
     public void displayOpeningEvolution(List<OpeningStatistics> openings) {
-        getData().clear();
+        long generation = ++displayGeneration;
+        int targetPoints = SeriesDownsampler.targetPoints(getWidth());
         
-        for (OpeningStatistics opening : openings) {
-            XYChart.Series<String, Number> series = new XYChart.Series<>();
-            series.setName(opening.getOpening());
-            
-            for (OpeningStatistics.TimePoint point : opening.getTimeline()) {
-                String dateStr = point.getDate().format(DATE_FORMATTER);
-                series.getData().add(new XYChart.Data<>(dateStr, point.getScore()));
+        CompletableFuture.supplyAsync(() -> {
+            ChartData data = new ChartData();
+            for (OpeningStatistics opening : openings) {
+                addSeries(data, opening.getOpening(), opening.getTimeline(),
+                          OpeningStatistics.TimePoint::getScore, targetPoints);
             }
-            
-            getData().add(series);
-        }
+            return data;
+        }).whenComplete((data, error) -> Platform.runLater(() -> apply(generation, data, error)));
     }
     
     /**
      * Display single opening evolution.
      */
     public void displaySingleOpening(OpeningStatistics opening) {
-        getData().clear();
+        long generation = ++displayGeneration;
+        int targetPoints = SeriesDownsampler.targetPoints(getWidth());
         
-        // Score series
-        XYChart.Series<String, Number> scoreSeries = new XYChart.Series<>();
-        scoreSeries.setName("Score %");
+        CompletableFuture.supplyAsync(() -> {
+            ChartData data = new ChartData();
+            addSeries(data, "Score %", opening.getTimeline(),
+                      OpeningStatistics.TimePoint::getScore, targetPoints);
+            addSeries(data, "Win Rate %", opening.getTimeline(),
+                      OpeningStatistics.TimePoint::getWinRate, targetPoints);
+            return data;
+        }).whenComplete((data, error) -> Platform.runLater(() -> apply(generation, data, error)));
+    }
+    
+    /**
+     * Clear the chart.
+     */
+    public void clear() {
+        displayGeneration++;
+        getData().clear();
+    }
+    
+    /**
+     * Build one downsampled series and add it with its categories to the chart data.
+     */
+    private static void addSeries(ChartData data, String name,
+                                  List<OpeningStatistics.TimePoint> timeline,
+                                  ToDoubleFunction<OpeningStatistics.TimePoint> value,
+                                  int targetPoints) {
+        double[] values = new double[timeline.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = value.applyAsDouble(timeline.get(i));
+        }
         
-        // Win rate series
-        XYChart.Series<String, Number> winSeries = new XYChart.Series<>();
-        winSeries.setName("Win Rate %");
+        List<XYChart.Data<String, Number>> points = new ArrayList<>();
+        for (int index : SeriesDownsampler.lttb(values, targetPoints)) {
+            OpeningStatistics.TimePoint point = timeline.get(index);
+            String label = point.getDate().format(DATE_FORMATTER);
+            data.categories.put(point.getDate(), label);
+            points.add(new XYChart.Data<>(label, values[index]));
+        }
         
-        for (OpeningStatistics.TimePoint point : opening.getTimeline()) {
-            String dateStr = point.getDate().format(DATE_FORMATTER);
-            scoreSeries.getData().add(new XYChart.Data<>(dateStr, point.getScore()));
-            winSeries.getData().add(new XYChart.Data<>(dateStr, point.getWinRate()));
+        XYChart.Series<String, Number> series = new XYChart.Series<>(FXCollections.observableList(points));
+        series.setName(name);
+        data.series.add(series);
+        data.pointCount += points.size();
+    }
+    
+    /**
+     * Swap in a finished build on the FX thread.
+     */
+    private void apply(long generation, ChartData data, Throwable error) {
+        if (generation != displayGeneration) {
+            return;
         }
+        if (error != null) {
+            System.err.println("Error building evolution chart: " + error.getMessage());
+            return;
+        }
+        
+        setAnimated(data.pointCount <= ANIMATION_POINT_LIMIT);
         
-        getData().addAll(scoreSeries, winSeries);
+        // Downsampled series keep different dates; give the axis the sorted union
+        CategoryAxis xAxis = (CategoryAxis) getXAxis();
+        xAxis.setAutoRanging(false);
+        xAxis.setCategories(FXCollections.observableArrayList(new LinkedHashSet<>(data.categories.values())));
+        getData().setAll(data.series);
     }
     
     /**
-     * Clear the chart.
+     * Series built off the FX thread.
      */
-    public void clear() {
-        getData().clear();
+    private static class ChartData {
+        private final List<XYChart.Series<String, Number>> series = new ArrayList<>();
+        private final Map<LocalDate, String> categories = new TreeMap<>();
+        private int pointCount;
     }
 }
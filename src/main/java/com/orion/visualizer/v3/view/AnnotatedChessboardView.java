@@ -1,19 +1,35 @@
 package com.orion.visualizer.v3.view;
 
+import com.orion.visualizer.util.ChessNotation;
 import com.orion.visualizer.v3.model.VisualAnnotations;
+import com.orion.visualizer.view.PieceSpriteAtlas;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
 /**
  * Chessboard view with support for visual annotations (highlights and arrows).
+ *
+ * The three canvases are redrawn only when their inputs change: the board once,
+ * the pieces per changed square, and the annotations per dirty region (the
+ * squares and arrow bounding boxes that were added or removed).
  */
 public class AnnotatedChessboardView extends Pane {
     private static final int BOARD_SIZE = 480;
     private static final int SQUARE_SIZE = BOARD_SIZE / 8;
     private static final Color LIGHT_SQUARE = Color.web("#F0D9B5");
     private static final Color DARK_SQUARE = Color.web("#B58863");
+    private static final double ARROW_LINE_WIDTH = 8;
+    private static final double ARROW_HEAD_LENGTH = 20;
+    private static final double ARROW_HEAD_WIDTH = 10;
     
     private final Canvas boardCanvas;
     private final Canvas annotationCanvas;
@@ -22,6 +38,12 @@ public class AnnotatedChessboardView extends Pane {
     private VisualAnnotations currentAnnotations;
     private String currentFen;
     
+    // What is currently drawn on the piece and annotation layers
+    private PieceSpriteAtlas atlas;
+    private final char[] drawnPieces = new char[64];
+    private List<VisualAnnotations.SquareHighlight> drawnHighlights = new ArrayList<>();
+    private List<VisualAnnotations.Arrow> drawnArrows = new ArrayList<>();
+    
     public AnnotatedChessboardView() {
         // Create layered canvases
         this.boardCanvas = new Canvas(BOARD_SIZE, BOARD_SIZE);
@@ -81,25 +103,107 @@ public class AnnotatedChessboardView extends Pane {
     }
     
     /**
-     * Render visual annotations.
+     * Render visual annotations, redrawing only the regions whose annotations changed.
      */
     private void renderAnnotations() {
-        GraphicsContext gc = annotationCanvas.getGraphicsContext2D();
-        gc.clearRect(0, 0, BOARD_SIZE, BOARD_SIZE);
+        List<VisualAnnotations.SquareHighlight> highlights = currentAnnotations.getHighlights();
+        List<VisualAnnotations.Arrow> arrows = currentAnnotations.getArrows();
         
-        if (currentAnnotations == null) return;
+        // Collect bounds of everything added or removed since the last render
+        Set<Rectangle2D> dirty = new LinkedHashSet<>();
+        for (VisualAnnotations.SquareHighlight h : symmetricDifference(drawnHighlights, highlights)) {
+            addIfNotNull(dirty, highlightBounds(h));
+        }
+        for (VisualAnnotations.Arrow a : symmetricDifference(drawnArrows, arrows)) {
+            addIfNotNull(dirty, arrowBounds(a));
+        }
         
-        // Render highlights
-        for (VisualAnnotations.SquareHighlight highlight : currentAnnotations.getHighlights()) {
-            renderHighlight(gc, highlight);
+        drawnHighlights = highlights;
+        drawnArrows = arrows;
+        if (dirty.isEmpty()) {
+            return;
         }
         
-        // Render arrows
-        for (VisualAnnotations.Arrow arrow : currentAnnotations.getArrows()) {
-            renderArrow(gc, arrow);
+        GraphicsContext gc = annotationCanvas.getGraphicsContext2D();
+        for (Rectangle2D region : dirty) {
+            redrawRegion(gc, region, highlights, arrows);
+        }
+    }
+    
+    /**
+     * Clear one region and redraw every annotation that overlaps it, clipped to the region.
+     */
+    private void redrawRegion(GraphicsContext gc, Rectangle2D region,
+                              List<VisualAnnotations.SquareHighlight> highlights,
+                              List<VisualAnnotations.Arrow> arrows) {
+        gc.save();
+        gc.beginPath();
+        gc.rect(region.getMinX(), region.getMinY(), region.getWidth(), region.getHeight());
+        gc.clip();
+        gc.clearRect(region.getMinX(), region.getMinY(), region.getWidth(), region.getHeight());
+        
+        // Highlights below arrows, as in a full render
+        for (VisualAnnotations.SquareHighlight highlight : highlights) {
+            Rectangle2D bounds = highlightBounds(highlight);
+            if (bounds != null && bounds.intersects(region)) {
+                renderHighlight(gc, highlight);
+            }
+        }
+        for (VisualAnnotations.Arrow arrow : arrows) {
+            Rectangle2D bounds = arrowBounds(arrow);
+            if (bounds != null && bounds.intersects(region)) {
+                renderArrow(gc, arrow);
+            }
+        }
+        
+        gc.restore();
+    }
+    
+    /**
+     * Items present in exactly one of the two lists.
+     */
+    private static <T> List<T> symmetricDifference(List<T> before, List<T> after) {
+        List<T> changed = new ArrayList<>();
+        for (T item : before) {
+            if (!after.contains(item)) changed.add(item);
+        }
+        for (T item : after) {
+            if (!before.contains(item)) changed.add(item);
+        }
+        return changed;
+    }
+    
+    private static void addIfNotNull(Set<Rectangle2D> regions, Rectangle2D region) {
+        if (region != null) {
+            regions.add(region);
         }
     }
     
+    /**
+     * Canvas bounds of a highlighted square.
+     */
+    private Rectangle2D highlightBounds(VisualAnnotations.SquareHighlight highlight) {
+        int[] coords = squareToCoords(highlight.getSquare());
+        if (coords == null) return null;
+        return new Rectangle2D(coords[0] * SQUARE_SIZE, coords[1] * SQUARE_SIZE, SQUARE_SIZE, SQUARE_SIZE);
+    }
+    
+    /**
+     * Canvas bounding box of an arrow including line width and head.
+     */
+    private Rectangle2D arrowBounds(VisualAnnotations.Arrow arrow) {
+        int[] fromCoords = squareToCoords(arrow.getFrom());
+        int[] toCoords = squareToCoords(arrow.getTo());
+        if (fromCoords == null || toCoords == null) return null;
+        
+        double margin = Math.max(ARROW_HEAD_WIDTH, ARROW_LINE_WIDTH / 2) + 2;
+        double minX = (Math.min(fromCoords[0], toCoords[0]) + 0.5) * SQUARE_SIZE - margin;
+        double minY = (Math.min(fromCoords[1], toCoords[1]) + 0.5) * SQUARE_SIZE - margin;
+        double maxX = (Math.max(fromCoords[0], toCoords[0]) + 0.5) * SQUARE_SIZE + margin;
+        double maxY = (Math.max(fromCoords[1], toCoords[1]) + 0.5) * SQUARE_SIZE + margin;
+        return new Rectangle2D(minX, minY, maxX - minX, maxY - minY);
+    }
+    
     /**
      * Render a square highlight.
      */
@@ -139,7 +243,7 @@ public class AnnotatedChessboardView extends Pane {
         
         // Draw arrow line
         gc.setStroke(color.deriveColor(0, 1, 1, 0.8));
-        gc.setLineWidth(8);
+        gc.setLineWidth(ARROW_LINE_WIDTH);
         gc.strokeLine(fromX, fromY, toX, toY);
         
         // Draw arrow head
@@ -152,8 +256,8 @@ public class AnnotatedChessboardView extends Pane {
     private void drawArrowHead(GraphicsContext gc, double fromX, double fromY, 
                               double toX, double toY, Color color) {
         double angle = Math.atan2(toY - fromY, toX - fromX);
-        double headLength = 20;
-        double headWidth = 10;
+        double headLength = ARROW_HEAD_LENGTH;
+        double headWidth = ARROW_HEAD_WIDTH;
         
         double tipX = toX;
         double tipY = toY;
@@ -176,27 +280,35 @@ public class AnnotatedChessboardView extends Pane {
     }
     
     /**
-     * Render chess pieces (simplified).
+     * Render chess pieces from the current FEN, redrawing only changed squares.
      */
     private void renderPosition() {
-        GraphicsContext gc = pieceCanvas.getGraphicsContext2D();
-        gc.clearRect(0, 0, BOARD_SIZE, BOARD_SIZE);
-        
-        // TODO: Parse FEN and render pieces
-        // For now, just show starting position symbols
-        gc.setFont(javafx.scene.text.Font.font("Arial Unicode MS", 40));
+        char[] pieces;
+        try {
+            pieces = ChessNotation.parseFenPlacement(currentFen);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error rendering FEN: " + e.getMessage());
+            return;
+        }
         
-        // Example: Render some pieces
-        String[] pieces = {"♜", "♞", "♝", "♛", "♚", "♝", "♞", "♜"};
-        for (int i = 0; i < 8; i++) {
-            gc.fillText(pieces[i], i * SQUARE_SIZE + 15, SQUARE_SIZE - 10);
-            gc.fillText("♟", i * SQUARE_SIZE + 15, 2 * SQUARE_SIZE - 10);
+        if (atlas == null) {
+            atlas = new PieceSpriteAtlas(SQUARE_SIZE);
         }
         
-        String[] whitePieces = {"♖", "♘", "♗", "♕", "♔", "♗", "♘", "♖"};
-        for (int i = 0; i < 8; i++) {
-            gc.fillText("♙", i * SQUARE_SIZE + 15, 7 * SQUARE_SIZE - 10);
-            gc.fillText(whitePieces[i], i * SQUARE_SIZE + 15, 8 * SQUARE_SIZE - 10);
+        GraphicsContext gc = pieceCanvas.getGraphicsContext2D();
+        for (int square = 0; square < 64; square++) {
+            if (pieces[square] == drawnPieces[square]) {
+                continue;
+            }
+            
+            // Rank 8 at top
+            double x = (square % 8) * SQUARE_SIZE;
+            double y = (7 - square / 8) * SQUARE_SIZE;
+            gc.clearRect(x, y, SQUARE_SIZE, SQUARE_SIZE);
+            if (pieces[square] != 0) {
+                atlas.draw(gc, pieces[square], x, y);
+            }
+            drawnPieces[square] = pieces[square];
         }
     }
     
@@ -208,10 +320,20 @@ public class AnnotatedChessboardView extends Pane {
         renderAnnotations();
     }
     
+    /**
+     * Redraw after the current annotations object was modified in place.
+     */
+    public void refreshAnnotations() {
+        renderAnnotations();
+    }
+    
     /**
      * Set position from FEN.
      */
     public void setPosition(String fen) {
+        if (Objects.equals(fen, currentFen)) {
+            return;
+        }
         this.currentFen = fen;
         renderPosition();
     }
@@ -1,74 +1,128 @@
 package com.orion.visualizer.view;
 
 import com.orion.visualizer.service.ChessEngineService;
-import com.orion.visualizer.util.ChessNotation;
-import javafx.geometry.Pos;
-import javafx.scene.control.Label;
-import javafx.scene.layout.GridPane;
-import javafx.scene.layout.StackPane;
+import com.orion.visualizer.service.MetricsService;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.MenuItem;
+import javafx.scene.layout.Region;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
-import javafx.scene.text.Font;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
 
 /**
  * JavaFX component for displaying a chess board.
+ * The board is drawn on a single canvas from a pre-rasterized piece atlas, and
+ * only squares whose piece or highlight changed since the last update are redrawn.
  */
-public class ChessboardView extends GridPane {
+public class ChessboardView extends Region {
     private static final int SQUARE_SIZE = 60;
+    private static final int MIN_SQUARE_SIZE = 20;
     private static final Color LIGHT_SQUARE = Color.rgb(240, 217, 181);
     private static final Color DARK_SQUARE = Color.rgb(181, 136, 99);
     private static final Color HIGHLIGHT_COLOR = Color.rgb(255, 255, 0, 0.5);
-    
-    private final SquarePane[][] squares;
+
+    private final Canvas canvas;
+    private final char[] drawnPieces;
     private ChessEngineService engine;
+    private PieceSpriteAtlas atlas;
+    private int squareSize = SQUARE_SIZE;
+    private int drawnHighlight = -1;
+    private boolean fullRedraw = true;
     private int highlightedFile = -1;
     private int highlightedRank = -1;
+    private Consumer<String> onShowGamesForPosition;
 
     public ChessboardView() {
-        this.squares = new SquarePane[8][8];
+        this.canvas = new Canvas(8 * SQUARE_SIZE, 8 * SQUARE_SIZE);
+        this.drawnPieces = new char[64];
         this.engine = new ChessEngineService();
-        
-        initializeBoard();
+
+        getChildren().add(canvas);
+        setPrefSize(8 * SQUARE_SIZE, 8 * SQUARE_SIZE);
+        setMinSize(8 * MIN_SQUARE_SIZE, 8 * MIN_SQUARE_SIZE);
+
+        MenuItem showGamesItem = new MenuItem("Show games reaching this position");
+        showGamesItem.setOnAction(e -> {
+            if (onShowGamesForPosition != null) {
+                onShowGamesForPosition.accept(engine.getFen());
+            }
+        });
+        ContextMenu contextMenu = new ContextMenu(showGamesItem);
+        setOnContextMenuRequested(e -> contextMenu.show(this, e.getScreenX(), e.getScreenY()));
+
         updateBoard();
     }
 
     /**
-     * Initialize the board grid.
+     * Resize the canvas to the largest whole square size that fits; the piece
+     * atlas is re-rasterized once per size.
      */
-    private void initializeBoard() {
-        for (int rank = 0; rank < 8; rank++) {
-            for (int file = 0; file < 8; file++) {
-                // Create square (flip rank for display: rank 7 at top, rank 0 at bottom)
-                int displayRank = 7 - rank;
-                boolean isLight = (file + displayRank) % 2 == 0;
-                Color squareColor = isLight ? LIGHT_SQUARE : DARK_SQUARE;
-                
-                SquarePane square = new SquarePane(file, displayRank, squareColor);
-                squares[file][displayRank] = square;
-                
-                // Add to grid (rank 0 at bottom, so use rank index directly)
-                add(square, file, rank);
-            }
+    @Override
+    protected void layoutChildren() {
+        int size = (int) Math.floor(Math.min(getWidth(), getHeight()) / 8);
+        if (size >= MIN_SQUARE_SIZE && size != squareSize) {
+            squareSize = size;
+            canvas.setWidth(8 * size);
+            canvas.setHeight(8 * size);
+            fullRedraw = true;
+            updateBoard();
         }
-        
-        setHgap(0);
-        setVgap(0);
+        canvas.relocate(0, 0);
     }
 
     /**
      * Update board display from current engine state.
      */
     public void updateBoard() {
-        for (int rank = 0; rank < 8; rank++) {
-            for (int file = 0; file < 8; file++) {
-                Character piece = engine.getPieceAt(file, rank);
-                squares[file][rank].setPiece(piece);
-                
-                // Update highlight
-                boolean highlighted = (file == highlightedFile && rank == highlightedRank);
-                squares[file][rank].setHighlighted(highlighted);
+        if (atlas == null || atlas.getSquareSize() != squareSize) {
+            atlas = new PieceSpriteAtlas(squareSize);
+        }
+
+        char[] pieces = engine.getPieces();
+        int highlight = highlightedFile >= 0 ? highlightedRank * 8 + highlightedFile : -1;
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        int redrawn = 0;
+
+        for (int square = 0; square < 64; square++) {
+            boolean highlightChanged = square == highlight || square == drawnHighlight;
+            if (fullRedraw || highlightChanged || pieces[square] != drawnPieces[square]) {
+                drawSquare(gc, square, pieces[square], square == highlight);
+                redrawn++;
             }
         }
+
+        System.arraycopy(pieces, 0, drawnPieces, 0, 64);
+        drawnHighlight = highlight;
+        fullRedraw = false;
+        MetricsService.getInstance().add("ui.board.squaresRedrawn", redrawn);
+    }
+
+    /**
+     * Draw one square: background, optional highlight and piece sprite.
+     */
+    private void drawSquare(GraphicsContext gc, int square, char piece, boolean highlighted) {
+        int file = square % 8;
+        int rank = square / 8;
+
+        // Rank 7 at top, rank 0 at bottom
+        double x = file * squareSize;
+        double y = (7 - rank) * squareSize;
+
+        boolean isLight = (file + rank) % 2 != 0;
+        gc.setFill(isLight ? LIGHT_SQUARE : DARK_SQUARE);
+        gc.fillRect(x, y, squareSize, squareSize);
+
+        if (highlighted) {
+            gc.setFill(HIGHLIGHT_COLOR);
+            gc.fillRect(x, y, squareSize, squareSize);
+        }
+
+        if (piece != 0) {
+            atlas.draw(gc, piece, x, y);
+        }
     }
 
     /**
@@ -86,6 +140,13 @@ public class ChessboardView extends GridPane {
         return engine;
     }
 
+    /**
+     * Set the handler for "Show games reaching this position"; it receives the displayed FEN.
+     */
+    public void setOnShowGamesForPosition(Consumer<String> handler) {
+        this.onShowGamesForPosition = handler;
+    }
+
     /**
      * Highlight a specific square.
      */
@@ -114,60 +175,11 @@ public class ChessboardView extends GridPane {
     }
 
     /**
-     * Individual square pane.
+     * Force every square to be redrawn on the next update.
      */
-    private static class SquarePane extends StackPane {
-        private final int file;
-        private final int rank;
-        private final Rectangle background;
-        private final Rectangle highlight;
-        private final Label pieceLabel;
-        private final Color baseColor;
-
-        public SquarePane(int file, int rank, Color color) {
-            this.file = file;
-            this.rank = rank;
-            this.baseColor = color;
-            
-            // Background
-            background = new Rectangle(SQUARE_SIZE, SQUARE_SIZE);
-            background.setFill(color);
-            
-            // Highlight overlay
-            highlight = new Rectangle(SQUARE_SIZE, SQUARE_SIZE);
-            highlight.setFill(HIGHLIGHT_COLOR);
-            highlight.setVisible(false);
-            
-            // Piece label
-            pieceLabel = new Label();
-            pieceLabel.setFont(Font.font("Arial Unicode MS", 40));
-            pieceLabel.setAlignment(Pos.CENTER);
-            
-            getChildren().addAll(background, highlight, pieceLabel);
-            
-            setPrefSize(SQUARE_SIZE, SQUARE_SIZE);
-            setMinSize(SQUARE_SIZE, SQUARE_SIZE);
-            setMaxSize(SQUARE_SIZE, SQUARE_SIZE);
-        }
-
-        public void setPiece(Character piece) {
-            if (piece == null) {
-                pieceLabel.setText("");
-            } else {
-                pieceLabel.setText(ChessNotation.getPieceSymbol(piece));
-            }
-        }
-
-        public void setHighlighted(boolean highlighted) {
-            highlight.setVisible(highlighted);
-        }
-
-        public int getFile() {
-            return file;
-        }
-
-        public int getRank() {
-            return rank;
-        }
+    public void invalidate() {
+        Arrays.fill(drawnPieces, (char) 0);
+        fullRedraw = true;
+        updateBoard();
     }
 }
@@ -1,21 +1,35 @@
 package com.orion.visualizer.view;
 
 import com.orion.visualizer.model.GameReference;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.util.Callback;
 
 import java.time.LocalDate;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * JavaFX component for displaying a list of games.
+ *
+ * Large game lists (e.g. the root or a first-move node) are shown in paged mode:
+ * rows are read by index straight from the node's game postings without copying,
+ * and column sorting runs off the FX thread on primitive keys.
  */
 public class GameListView extends TableView<GameReference> {
+    private static final int PAGED_MODE_THRESHOLD = 2_000;
+    
+    private final Map<TableColumn<GameReference, ?>, SortKey> sortKeys = new HashMap<>();
+    private final Callback<TableView<GameReference>, Boolean> defaultSortPolicy = getSortPolicy();
     private Consumer<GameReference> onGameSelected;
+    private int sortGeneration;
 
     public GameListView() {
         setupColumns();
@@ -52,6 +66,12 @@ public class GameListView extends TableView<GameReference> {
         eventCol.setPrefWidth(200);
         
         getColumns().addAll(resultCol, whiteCol, blackCol, dateCol, eventCol);
+        
+        sortKeys.put(resultCol, SortKey.RESULT);
+        sortKeys.put(whiteCol, SortKey.WHITE);
+        sortKeys.put(blackCol, SortKey.BLACK);
+        sortKeys.put(dateCol, SortKey.DATE);
+        sortKeys.put(eventCol, SortKey.EVENT);
     }
 
     /**
@@ -69,15 +89,83 @@ public class GameListView extends TableView<GameReference> {
      * Set the list of games to display.
      */
     public void setGames(List<GameReference> games) {
-        ObservableList<GameReference> items = FXCollections.observableArrayList(games);
-        setItems(items);
+        sortGeneration++;
+        
+        if (games.size() < PAGED_MODE_THRESHOLD) {
+            setSortPolicy(defaultSortPolicy);
+            ObservableList<GameReference> items = FXCollections.observableArrayList(games);
+            setItems(items);
+            return;
+        }
+        
+        // Paged mode: no copy, sorting handled off the FX thread
+        PostingsList postings = new PostingsList(games);
+        setSortPolicy(table -> {
+            sortPostingsAsync(postings);
+            return true;
+        });
+        setItems(postings);
+        if (!getSortOrder().isEmpty()) {
+            sortPostingsAsync(postings);
+        }
     }
 
     /**
      * Clear the game list.
      */
     public void clearGames() {
-        getItems().clear();
+        sortGeneration++;
+        setSortPolicy(defaultSortPolicy);
+        setItems(FXCollections.observableArrayList());
+    }
+
+    /**
+     * Compute the row order for the primary sort column in the background and
+     * apply it on the FX thread if the list is still displayed.
+     */
+    private void sortPostingsAsync(PostingsList postings) {
+        int generation = ++sortGeneration;
+        
+        TableColumn<GameReference, ?> column = getSortOrder().isEmpty() ? null : getSortOrder().get(0);
+        SortKey key = column != null ? sortKeys.get(column) : null;
+        if (key == null) {
+            postings.applyOrder(null);
+            return;
+        }
+        
+        boolean descending = column.getSortType() == TableColumn.SortType.DESCENDING;
+        List<GameReference> source = postings.getSource();
+        
+        CompletableFuture.supplyAsync(() -> computeOrder(source, key, descending))
+            .thenAccept(order -> Platform.runLater(() -> {
+                if (generation == sortGeneration && getItems() == postings) {
+                    postings.applyOrder(order);
+                }
+            }))
+            .exceptionally(e -> {
+                System.err.println("Error sorting games: " + e.getMessage());
+                return null;
+            });
+    }
+
+    /**
+     * Sort row indices by a primitive key. Key and row index are packed into one
+     * long so a single primitive sort yields a stable order.
+     */
+    private static int[] computeOrder(List<GameReference> source, SortKey key, boolean descending) {
+        int[] keys = key.extractKeys(source);
+        long[] packed = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            int k = descending ? ~keys[i] : keys[i];
+            packed[i] = ((long) k << 32) | i;
+        }
+        Arrays.parallelSort(packed);
+        
+        int[] order = new int[packed.length];
+        for (int i = 0; i < packed.length; i++) {
+            order[i] = (int) packed[i];
+        }
+        return order;
     }
 
     /**
@@ -86,4 +174,108 @@ public class GameListView extends TableView<GameReference> {
     public void setOnGameSelected(Consumer<GameReference> callback) {
         this.onGameSelected = callback;
     }
+
+    /**
+     * Sortable columns and how to turn them into primitive keys.
+     */
+    private enum SortKey {
+        RESULT(GameReference::getResult),
+        WHITE(GameReference::getWhite),
+        BLACK(GameReference::getBlack),
+        DATE(null),
+        EVENT(GameReference::getEvent);
+
+        private final Function<GameReference, String> textValue;
+
+        SortKey(Function<GameReference, String> textValue) {
+            this.textValue = textValue;
+        }
+
+        /**
+         * Extract one int key per row. Text columns are mapped to the rank of the
+         * value among the distinct values; nulls sort first as in the default comparator.
+         */
+        int[] extractKeys(List<GameReference> source) {
+            int[] keys = new int[source.size()];
+            
+            if (this == DATE) {
+                for (int i = 0; i < keys.length; i++) {
+                    LocalDate date = source.get(i).getDate();
+                    keys[i] = date != null ? (int) date.toEpochDay() : Integer.MIN_VALUE;
+                }
+                return keys;
+            }
+            
+            Set<String> distinct = new HashSet<>();
+            for (GameReference game : source) {
+                String value = textValue.apply(game);
+                if (value != null) {
+                    distinct.add(value);
+                }
+            }
+            String[] sorted = distinct.toArray(new String[0]);
+            Arrays.sort(sorted);
+            Map<String, Integer> ranks = new HashMap<>(sorted.length * 2);
+            for (int i = 0; i < sorted.length; i++) {
+                ranks.put(sorted[i], i);
+            }
+            
+            for (int i = 0; i < keys.length; i++) {
+                String value = textValue.apply(source.get(i));
+                keys[i] = value != null ? ranks.get(value) : -1;
+            }
+            return keys;
+        }
+    }
+
+    /**
+     * Read-only list over a node's game postings with an optional row order.
+     * Rows are fetched by index; nothing is copied.
+     */
+    private static class PostingsList extends ObservableListBase<GameReference> {
+        private final List<GameReference> source;
+        private int[] order; // null means natural order
+
+        PostingsList(List<GameReference> source) {
+            this.source = source;
+        }
+
+        List<GameReference> getSource() {
+            return source;
+        }
+
+        @Override
+        public GameReference get(int index) {
+            return source.get(order != null ? order[index] : index);
+        }
+
+        @Override
+        public int size() {
+            return source.size();
+        }
+
+        /**
+         * Replace the row order and fire a permutation change.
+         */
+        void applyOrder(int[] newOrder) {
+            if (newOrder == null && order == null) {
+                return;
+            }
+            
+            int size = size();
+            int[] newPosition = new int[size];
+            for (int row = 0; row < size; row++) {
+                newPosition[newOrder != null ? newOrder[row] : row] = row;
+            }
+            int[] permutation = new int[size];
+            for (int row = 0; row < size; row++) {
+                permutation[row] = newPosition[order != null ? order[row] : row];
+            }
+            
+            order = newOrder;
+            beginChange();
+            nextPermutation(0, size, permutation);
+            endChange();
+        }
+    }
 }
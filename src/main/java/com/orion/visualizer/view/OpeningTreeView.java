@@ -1,21 +1,39 @@
 package com.orion.visualizer.view;
 
-import com.orion.visualizer.model.OpeningTreeNode;
+import com.orion.visualizer.model.OpeningNode;
+import com.orion.visualizer.util.Statistics;
+import javafx.collections.ObservableList;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.MenuItem;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
 import javafx.scene.paint.Color;
 import javafx.scene.control.TreeCell;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 /**
  * JavaFX component for displaying the opening tree.
+ * Tree items are created lazily: children are materialized and sorted only
+ * when a node is first expanded. Trees are immutable snapshots; a newer
+ * snapshot of the displayed tree is shown with refreshNodes or refreshPath,
+ * which match items to the new nodes by move.
+ *
+ * A preview tree built from a sample of the games shows estimated game counts
+ * and a 95% confidence interval of the win rate instead of exact figures.
  */
-public class OpeningTreeView extends TreeView<OpeningTreeNode> {
-    private Consumer<OpeningTreeNode> onNodeSelected;
+public class OpeningTreeView extends TreeView<OpeningNode> {
+    private Consumer<OpeningNode> onNodeSelected;
+    private Consumer<OpeningNode> onDeepenRequested;
+    // Share of the games the displayed tree was built from; 1 for exact trees
+    private double sampleFraction = 1.0;
 
     public OpeningTreeView() {
-        setCellFactory(tv -> new OpeningTreeCell());
+        setCellFactory(tv -> new OpeningTreeCell(this));
         setShowRoot(true);
         
         // Handle selection
@@ -24,44 +42,161 @@ public class OpeningTreeView extends TreeView<OpeningTreeNode> {
                 onNodeSelected.accept(newVal.getValue());
             }
         });
+        
+        // Leaves with games can be extended past the build depth
+        MenuItem deepenItem = new MenuItem("Deepen this line");
+        deepenItem.setOnAction(e -> {
+            TreeItem<OpeningNode> selected = getSelectionModel().getSelectedItem();
+            if (selected != null && onDeepenRequested != null) {
+                onDeepenRequested.accept(selected.getValue());
+            }
+        });
+        ContextMenu contextMenu = new ContextMenu(deepenItem);
+        contextMenu.setOnShowing(e -> {
+            TreeItem<OpeningNode> selected = getSelectionModel().getSelectedItem();
+            deepenItem.setDisable(selected == null || !selected.isLeaf()
+                || selected.getValue().getGames().isEmpty());
+        });
+        setContextMenu(contextMenu);
     }
 
     /**
      * Set the root node of the tree.
      */
-    public void setTreeRoot(OpeningTreeNode node) {
+    public void setTreeRoot(OpeningNode node) {
+        setTreeRoot(node, 1.0);
+    }
+
+    /**
+     * Set the root node of a preview tree built from a sample of the games.
+     *
+     * @param sampleFraction Share of the games in the sample
+     */
+    public void setTreeRoot(OpeningNode node, double sampleFraction) {
+        this.sampleFraction = sampleFraction;
         if (node == null) {
             setRoot(null);
             return;
         }
         
-        TreeItem<OpeningTreeNode> rootItem = buildTreeItem(node);
+        TreeItem<OpeningNode> rootItem = new LazyTreeItem(node);
         rootItem.setExpanded(true);
         setRoot(rootItem);
     }
 
     /**
-     * Build a TreeItem from an OpeningTreeNode recursively.
+     * Show a newer snapshot of the displayed tree (e.g. with merged games).
+     * Only items already created are updated; expansion and selection are kept.
+     * Snapshots are exact, so a preview shown meanwhile is replaced.
+     */
+    public void refreshNodes(OpeningNode root) {
+        if (getRoot() == null) {
+            setTreeRoot(root);
+            return;
+        }
+        sampleFraction = 1.0;
+        TreeItem<OpeningNode> selected = getSelectionModel().getSelectedItem();
+        ((LazyTreeItem) getRoot()).reload(root);
+        if (selected != null) {
+            getSelectionModel().select(selected);
+        }
+        refresh();
+    }
+
+    /**
+     * Show a newer snapshot of the displayed tree that differs only below one
+     * node (e.g. a deepened line) and expand that node. Only the items along
+     * the move path are updated; the others keep equal nodes of the older snapshot.
      */
-    private TreeItem<OpeningTreeNode> buildTreeItem(OpeningTreeNode node) {
-        TreeItem<OpeningTreeNode> item = new TreeItem<>(node);
+    public void refreshPath(OpeningNode root, List<String> movePath) {
+        if (getRoot() == null) {
+            return;
+        }
+        
+        TreeItem<OpeningNode> current = getRoot();
+        OpeningNode node = root;
+        current.setValue(node);
+        for (String move : movePath) {
+            node = node.getChild(move);
+            TreeItem<OpeningNode> next = null;
+            for (TreeItem<OpeningNode> child : current.getChildren()) {
+                if (node != null && child.getValue().getMove().equals(move)) {
+                    next = child;
+                    break;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            next.setValue(node);
+            current = next;
+        }
         
-        // Add children sorted by game count
-        for (OpeningTreeNode child : node.getChildrenSorted()) {
-            TreeItem<OpeningTreeNode> childItem = buildTreeItem(child);
-            item.getChildren().add(childItem);
+        ((LazyTreeItem) current).reload(node);
+        current.setExpanded(true);
+        refresh();
+    }
+
+    /**
+     * Show games added to a live tree along the given move paths. Only items
+     * already created on those paths are re-synced (new moves, new order);
+     * expansion and selection are kept.
+     */
+    public void refreshPaths(List<List<String>> movePaths) {
+        if (getRoot() == null) {
+            return;
         }
         
-        return item;
+        TreeItem<OpeningNode> selected = getSelectionModel().getSelectedItem();
+        for (List<String> movePath : movePaths) {
+            LazyTreeItem current = (LazyTreeItem) getRoot();
+            current.reload(current.getValue(), false);
+            for (String move : movePath) {
+                // Stop where items were never created; they will be when expanded
+                if (!current.childrenLoaded) {
+                    break;
+                }
+                LazyTreeItem next = null;
+                for (TreeItem<OpeningNode> child : current.getChildren()) {
+                    if (move.equals(child.getValue().getMove())) {
+                        next = (LazyTreeItem) child;
+                        break;
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+                next.reload(next.getValue(), false);
+                current = next;
+            }
+        }
+        if (selected != null) {
+            getSelectionModel().select(selected);
+        }
+        refresh();
+    }
+
+    /**
+     * Check whether the displayed tree is a preview built from a sample.
+     */
+    public boolean isPreview() {
+        return sampleFraction < 1.0;
     }
 
     /**
      * Set callback for node selection.
      */
-    public void setOnNodeSelected(Consumer<OpeningTreeNode> callback) {
+    public void setOnNodeSelected(Consumer<OpeningNode> callback) {
         this.onNodeSelected = callback;
     }
 
+    /**
+     * Set callback for the "Deepen this line" context menu item.
+     */
+    public void setOnDeepenRequested(Consumer<OpeningNode> callback) {
+        this.onDeepenRequested = callback;
+    }
+
     /**
      * Expand tree to a certain depth.
      */
@@ -71,10 +206,11 @@ public class OpeningTreeView extends TreeView<OpeningTreeNode> {
         }
     }
 
-    private void expandToDepth(TreeItem<OpeningTreeNode> item, int maxDepth, int currentDepth) {
-        if (currentDepth < maxDepth) {
+    private void expandToDepth(TreeItem<OpeningNode> item, int maxDepth, int currentDepth) {
+        // Only expanded items materialize their children
+        if (currentDepth < maxDepth && !item.isLeaf()) {
             item.setExpanded(true);
-            for (TreeItem<OpeningTreeNode> child : item.getChildren()) {
+            for (TreeItem<OpeningNode> child : item.getChildren()) {
                 expandToDepth(child, maxDepth, currentDepth + 1);
             }
         }
@@ -88,13 +224,18 @@ public class OpeningTreeView extends TreeView<OpeningTreeNode> {
             return;
         }
         
-        TreeItem<OpeningTreeNode> current = getRoot();
+        TreeItem<OpeningNode> current = getRoot();
         
         for (String move : movePath) {
+            // Check the model first so a missing move does not materialize items
+            OpeningNode target = current.getValue().getChild(move);
+            if (target == null) {
+                break;
+            }
+            
             boolean found = false;
-            for (TreeItem<OpeningTreeNode> child : current.getChildren()) {
-                if (child.getValue().getMove() != null && 
-                    child.getValue().getMove().equals(move)) {
+            for (TreeItem<OpeningNode> child : current.getChildren()) {
+                if (child.getValue() == target) {
                     current = child;
                     current.setExpanded(true);
                     found = true;
@@ -110,12 +251,86 @@ public class OpeningTreeView extends TreeView<OpeningTreeNode> {
         scrollTo(getRow(current));
     }
 
+    /**
+     * Tree item that creates its child items on first access.
+     */
+    private static class LazyTreeItem extends TreeItem<OpeningNode> {
+        private boolean childrenLoaded;
+
+        LazyTreeItem(OpeningNode node) {
+            super(node);
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return getValue().getChildren().isEmpty();
+        }
+
+        /**
+         * Show the same position of a newer snapshot, re-syncing loaded
+         * children and reusing existing items for the same moves.
+         */
+        void reload(OpeningNode node) {
+            reload(node, true);
+        }
+
+        /**
+         * @param deep Whether loaded grandchildren are re-synced as well
+         */
+        void reload(OpeningNode node, boolean deep) {
+            setValue(node);
+            if (!childrenLoaded) {
+                return;
+            }
+            
+            Map<String, TreeItem<OpeningNode>> existing = new HashMap<>();
+            for (TreeItem<OpeningNode> item : super.getChildren()) {
+                existing.put(item.getValue().getMove(), item);
+            }
+            
+            List<TreeItem<OpeningNode>> items = new ArrayList<>();
+            for (OpeningNode child : node.getChildrenSorted()) {
+                TreeItem<OpeningNode> item = existing.get(child.getMove());
+                if (item != null) {
+                    if (deep) {
+                        ((LazyTreeItem) item).reload(child);
+                    }
+                } else {
+                    item = new LazyTreeItem(child);
+                }
+                items.add(item);
+            }
+            super.getChildren().setAll(items);
+        }
+
+        @Override
+        public ObservableList<TreeItem<OpeningNode>> getChildren() {
+            if (!childrenLoaded) {
+                childrenLoaded = true;
+                
+                // Add children sorted by game count
+                List<TreeItem<OpeningNode>> items = new ArrayList<>();
+                for (OpeningNode child : getValue().getChildrenSorted()) {
+                    items.add(new LazyTreeItem(child));
+                }
+                super.getChildren().setAll(items);
+            }
+            return super.getChildren();
+        }
+    }
+
     /**
      * Custom tree cell for displaying opening tree nodes with color coding.
      */
-    private static class OpeningTreeCell extends TreeCell<OpeningTreeNode> {
+    private static class OpeningTreeCell extends TreeCell<OpeningNode> {
+        private final OpeningTreeView treeView;
+
+        OpeningTreeCell(OpeningTreeView treeView) {
+            this.treeView = treeView;
+        }
+
         @Override
-        protected void updateItem(OpeningTreeNode node, boolean empty) {
+        protected void updateItem(OpeningNode node, boolean empty) {
             super.updateItem(node, empty);
             
             if (empty || node == null) {
@@ -123,7 +338,8 @@ public class OpeningTreeView extends TreeView<OpeningTreeNode> {
                 setGraphic(null);
                 setStyle("");
             } else {
-                setText(node.getCompactDisplayString());
+                setText(treeView.isPreview() ? previewText(node, treeView.sampleFraction)
+                    : node.getCompactDisplayString());
                 
                 // Color code based on win percentage
                 double winRate = node.getWinPercentage();
@@ -142,5 +358,17 @@ public class OpeningTreeView extends TreeView<OpeningTreeNode> {
                 setStyle("-fx-text-fill: " + color + ";");
             }
         }
+
+        /**
+         * Estimated game count and 95% interval of the win rate.
+         */
+        private static String previewText(OpeningNode node, double sampleFraction) {
+            long estimate = Math.round(node.getGameCount() / sampleFraction);
+            if (node.getMove() == null) {
+                return String.format("Start (~%d)", estimate);
+            }
+            double[] win = Statistics.wilsonInterval(node.getWins(), node.getGameCount(), Statistics.Z_95);
+            return String.format("%s (~%d, %.0f-%.0f%%)", node.getMove(), estimate, win[0] * 100, win[1] * 100);
+        }
     }
 }
@@ -0,0 +1,69 @@
+package com.orion.visualizer.view;
+
+import com.orion.visualizer.util.ChessNotation;
+import javafx.geometry.VPos;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * Pre-rasterized piece images for one square size.
+ * All twelve pieces are drawn once into a single image strip; boards then copy
+ * sprites from it with drawImage instead of laying out text for every square.
+ * Must be created on the FX thread.
+ */
+public class PieceSpriteAtlas {
+    private static final String PIECES = "KQRBNPkqrbnp";
+    private static final double GLYPH_SCALE = 0.67;
+
+    private final int squareSize;
+    private final Image atlas;
+
+    public PieceSpriteAtlas(int squareSize) {
+        this.squareSize = squareSize;
+        this.atlas = rasterize(squareSize);
+    }
+
+    public int getSquareSize() {
+        return squareSize;
+    }
+
+    /**
+     * Draw a piece at the given top-left square position.
+     *
+     * @param piece Piece character (K, Q, R, B, N, P for white; k, q, r, b, n, p for black)
+     */
+    public void draw(GraphicsContext gc, char piece, double x, double y) {
+        int index = PIECES.indexOf(piece);
+        if (index < 0) {
+            return;
+        }
+        gc.drawImage(atlas, index * squareSize, 0, squareSize, squareSize,
+                     x, y, squareSize, squareSize);
+    }
+
+    /**
+     * Render all pieces into one transparent image strip.
+     */
+    private static Image rasterize(int size) {
+        Canvas canvas = new Canvas(size * PIECES.length(), size);
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setFont(Font.font("Arial Unicode MS", size * GLYPH_SCALE));
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+        gc.setFill(Color.BLACK);
+
+        for (int i = 0; i < PIECES.length(); i++) {
+            String symbol = ChessNotation.getPieceSymbol(PIECES.charAt(i));
+            gc.fillText(symbol, (i + 0.5) * size, size / 2.0);
+        }
+
+        SnapshotParameters params = new SnapshotParameters();
+        params.setFill(Color.TRANSPARENT);
+        return canvas.snapshot(params, null);
+    }
+}
@@ -2,6 +2,9 @@ package com.orion.visualizer.view;
 
 import com.orion.visualizer.model.GameReference;
 import com.orion.visualizer.model.OpeningTreeNode;
+import com.orion.visualizer.util.SeriesDownsampler;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.scene.chart.CategoryAxis;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
@@ -10,16 +13,21 @@ import javafx.scene.chart.XYChart;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
  * Timeline chart for visualizing opening usage and performance over time.
+ * Series are built and downsampled off the FX thread and swapped in at once;
+ * animation is disabled for large point counts.
  */
 public class TimelineChart extends LineChart<String, Number> {
     private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM");
     private static final DateTimeFormatter YEAR_FORMATTER = DateTimeFormatter.ofPattern("yyyy");
+    private static final int ANIMATION_POINT_LIMIT = 500;
     
     private TimeGranularity granularity;
+    private long updateGeneration;
 
     public enum TimeGranularity {
         MONTH("Month"),
@@ -63,49 +71,48 @@ public class TimelineChart extends LineChart<String, Number> {
      * Shows the top N most played openings over time.
      */
     public void updateChart(OpeningTreeNode root, int topN) {
-        getData().clear();
+        long generation = ++updateGeneration;
         
         if (root == null || root.getChildren().isEmpty()) {
+            getData().clear();
             return;
         }
         
-        // Get top N openings by total game count
-        List<OpeningTreeNode> topOpenings = root.getChildrenSorted()
-            .stream()
-            .limit(topN)
-            .toList();
-        
-        // Create a series for each opening
-        for (OpeningTreeNode opening : topOpenings) {
-            XYChart.Series<String, Number> series = new XYChart.Series<>();
-            series.setName(opening.getMove());
-            
-            // Group games by time period
-            Map<String, Long> timePeriodCounts = opening.getGames().stream()
-                .filter(game -> game.getDate() != null)
-                .collect(Collectors.groupingBy(
-                    game -> formatTimePeriod(game.getDate()),
-                    Collectors.counting()
-                ));
+        int targetPoints = SeriesDownsampler.targetPoints(getWidth());
+        CompletableFuture.supplyAsync(() -> {
+            // Get top N openings by total game count
+            List<OpeningTreeNode> topOpenings = root.getChildrenSorted()
+                .stream()
+                .limit(topN)
+                .toList();
             
-            // Sort by time period and add to series
-            timePeriodCounts.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .forEach(entry -> {
-                    series.getData().add(new XYChart.Data<>(entry.getKey(), entry.getValue()));
-                });
-            
-            getData().add(series);
-        }
+            // Create a series for each opening
+            List<XYChart.Series<String, Number>> seriesList = new ArrayList<>();
+            for (OpeningTreeNode opening : topOpenings) {
+                // Group games by time period, sorted by period
+                Map<String, Long> timePeriodCounts = opening.getGames().stream()
+                    .filter(game -> game.getDate() != null)
+                    .collect(Collectors.groupingBy(
+                        game -> formatTimePeriod(game.getDate()),
+                        TreeMap::new,
+                        Collectors.counting()
+                    ));
+                
+                seriesList.add(downsample(opening.getMove(), timePeriodCounts, targetPoints));
+            }
+            return seriesList;
+        }).whenComplete((seriesList, error) ->
+            Platform.runLater(() -> apply(generation, seriesList, error)));
     }
 
     /**
      * Update chart with win percentage over time for a specific opening.
      */
     public void updateWinPercentageChart(OpeningTreeNode node) {
-        getData().clear();
+        long generation = ++updateGeneration;
         
         if (node == null || node.getGames().isEmpty()) {
+            getData().clear();
             return;
         }
         
@@ -117,25 +124,75 @@ public class TimelineChart extends LineChart<String, Number> {
         yAxis.setLowerBound(0);
         yAxis.setUpperBound(100);
         
-        // Group games by time period
-        Map<String, List<GameReference>> timePeriodGames = node.getGames().stream()
-            .filter(game -> game.getDate() != null)
-            .collect(Collectors.groupingBy(game -> formatTimePeriod(game.getDate())));
-        
-        // Calculate win percentage for each period
-        XYChart.Series<String, Number> winSeries = new XYChart.Series<>();
-        winSeries.setName("Win %");
-        
-        timePeriodGames.entrySet().stream()
-            .sorted(Map.Entry.comparingByKey())
-            .forEach(entry -> {
-                List<GameReference> games = entry.getValue();
+        int targetPoints = SeriesDownsampler.targetPoints(getWidth());
+        CompletableFuture.supplyAsync(() -> {
+            // Group games by time period, sorted by period
+            Map<String, List<GameReference>> timePeriodGames = node.getGames().stream()
+                .filter(game -> game.getDate() != null)
+                .collect(Collectors.groupingBy(game -> formatTimePeriod(game.getDate()), TreeMap::new,
+                                               Collectors.toList()));
+            
+            // Calculate win percentage for each period
+            Map<String, Double> winPercentages = new TreeMap<>();
+            timePeriodGames.forEach((period, games) -> {
                 long wins = games.stream().filter(GameReference::isWin).count();
-                double winPercentage = (wins * 100.0) / games.size();
-                winSeries.getData().add(new XYChart.Data<>(entry.getKey(), winPercentage));
+                winPercentages.put(period, (wins * 100.0) / games.size());
             });
+            
+            return List.of(downsample("Win %", winPercentages, targetPoints));
+        }).whenComplete((seriesList, error) ->
+            Platform.runLater(() -> apply(generation, seriesList, error)));
+    }
+    
+    /**
+     * Build a series from period-ordered values, reduced to the target point count.
+     */
+    private static XYChart.Series<String, Number> downsample(String name,
+                                                             Map<String, ? extends Number> periodValues,
+                                                             int targetPoints) {
+        List<String> periods = new ArrayList<>(periodValues.keySet());
+        double[] values = new double[periods.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = periodValues.get(periods.get(i)).doubleValue();
+        }
+        
+        List<XYChart.Data<String, Number>> points = new ArrayList<>();
+        for (int index : SeriesDownsampler.lttb(values, targetPoints)) {
+            points.add(new XYChart.Data<>(periods.get(index), periodValues.get(periods.get(index))));
+        }
         
-        getData().add(winSeries);
+        XYChart.Series<String, Number> series = new XYChart.Series<>(FXCollections.observableList(points));
+        series.setName(name);
+        return series;
+    }
+    
+    /**
+     * Swap in finished series on the FX thread unless a newer update was requested.
+     */
+    private void apply(long generation, List<XYChart.Series<String, Number>> seriesList, Throwable error) {
+        if (generation != updateGeneration) {
+            return;
+        }
+        if (error != null) {
+            System.err.println("Error building timeline chart: " + error.getMessage());
+            return;
+        }
+        
+        // Periods sort chronologically as strings; downsampled series keep different ones
+        Set<String> categories = new TreeSet<>();
+        int pointCount = 0;
+        for (XYChart.Series<String, Number> series : seriesList) {
+            for (XYChart.Data<String, Number> point : series.getData()) {
+                categories.add(point.getXValue());
+            }
+            pointCount += series.getData().size();
+        }
+        
+        setAnimated(pointCount <= ANIMATION_POINT_LIMIT);
+        CategoryAxis xAxis = (CategoryAxis) getXAxis();
+        xAxis.setAutoRanging(false);
+        xAxis.setCategories(FXCollections.observableArrayList(categories));
+        getData().setAll(seriesList);
     }
 
     /**
@@ -153,6 +210,7 @@ public class TimelineChart extends LineChart<String, Number> {
      * Clear the chart.
      */
     public void clear() {
+        updateGeneration++;
         getData().clear();
     }
 }